@@ -0,0 +1,138 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.PluginParameterExpressionEvaluator;
+import org.apache.maven.plugin.descriptor.MojoDescriptor;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluationException;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.openjdk.jmh.annotations.*;
+import org.twdata.maven.mojoexecutor.MojoExecutor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of the plugin configuration into a snapshot, and retrieval of the delegate plugins configuration
+ * elements from it, see {@link ConfigurationHelper}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConfigurationBenchmark {
+
+    private static final List<String> PARAMETERS = Arrays.asList("sourceDirectory",
+            "testSourceDirectory",
+            "targetDirectory",
+            "basedir",
+            "compilerSource",
+            "compilerCompliance",
+            "compilerTargetPlatform",
+            "encoding",
+            "lineEnding",
+            "configFile",
+            "skipFormatting",
+            "useEclipseDefaults",
+            "sourceEncoding",
+            "groups",
+            "staticGroups",
+            "staticAfter",
+            "removeUnused",
+            "compliance");
+
+    /**
+     * Number of configuration parameters not handled by the delegate plugins, that have to be filtered out
+     */
+    @Param({"10", "100", "1000"})
+    public int extraParameters;
+
+    /**
+     * Number of children of the multi-valued <code>excludes</code> parameter
+     */
+    @Param({"10", "100"})
+    public int excludes;
+
+    private final Log log = new NoOpLog();
+    private PlexusConfiguration pomConfiguration;
+    private MavenSession mavenSession;
+    private PluginParameterExpressionEvaluator expressionEvaluator;
+    private ConfigurationSnapshot configurationSnapshot;
+    private MojoExecutor.Element includes;
+    private Map<String, MojoExecutor.Element> overrides;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("deprecation")
+    public void setup() throws ExpressionEvaluationException {
+        final XmlPlexusConfiguration configuration = new XmlPlexusConfiguration("configuration");
+        for (String parameter : PARAMETERS) {
+            final XmlPlexusConfiguration child = new XmlPlexusConfiguration(parameter);
+            child.setAttribute("default-value", "${project.build.sourceEncoding}");
+            child.setValue(parameter + "-value");
+            configuration.addChild(child);
+        }
+        final XmlPlexusConfiguration excludesConfiguration = new XmlPlexusConfiguration("excludes");
+        for (int i = 0; i < excludes; i++) {
+            final XmlPlexusConfiguration exclude = new XmlPlexusConfiguration("exclude");
+            exclude.setValue("**/generated" + i + "/**");
+            excludesConfiguration.addChild(exclude);
+        }
+        configuration.addChild(excludesConfiguration);
+        for (int i = 0; i < extraParameters; i++) {
+            final XmlPlexusConfiguration child = new XmlPlexusConfiguration("extraParameter" + i);
+            child.setValue("${basedir}/extra" + i);
+            configuration.addChild(child);
+        }
+        pomConfiguration = configuration;
+        mavenSession = new MavenSession(null,
+                new DefaultRepositorySystemSession(),
+                new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+        mavenSession.setCurrentProject(new MavenProject());
+        expressionEvaluator = new PluginParameterExpressionEvaluator(mavenSession, new MojoExecution(new MojoDescriptor()));
+        includes = ConfigurationHelper.getIncludesElement(Collections.emptyList(), log);
+        overrides = new HashMap<>();
+        configurationSnapshot = getConfigurationSnapshot();
+    }
+
+    /**
+     * Evaluation of the configuration of a further module, once its template is shared in the session
+     */
+    @Benchmark
+    public ConfigurationSnapshot getConfigurationSnapshot() throws ExpressionEvaluationException {
+        return ConfigurationHelper.getConfigurationSnapshot(pomConfiguration,
+                Collections.emptyList(),
+                expressionEvaluator,
+                mavenSession,
+                mavenSession.getCurrentProject(),
+                log);
+    }
+
+    @Benchmark
+    public MojoExecutor.Element[] getFormatterConfigurationElements() {
+        return ConfigurationHelper.getFormatterConfigurationElements(includes, overrides, configurationSnapshot, log);
+    }
+
+    @Benchmark
+    public MojoExecutor.Element[] getImpsortConfigurationElements() {
+        return ConfigurationHelper.getImpsortConfigurationElements(includes, overrides, configurationSnapshot, log);
+    }
+
+    @Benchmark
+    public SortedMap<String, String> getEvaluatedConfiguration() {
+        return ConfigurationHelper.getEvaluatedConfiguration(configurationSnapshot, Collections.emptyList(), log);
+    }
+}
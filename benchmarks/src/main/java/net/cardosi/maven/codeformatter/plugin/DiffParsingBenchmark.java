@@ -0,0 +1,97 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the unified diff written by the <code>maven-scm-plugin</code> <code>diff</code> goal, see
+ * {@link SCMHelper#getDiffChanges(File, Log)}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiffParsingBenchmark {
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int files;
+
+    @Param({"2"})
+    public int hunksPerFile;
+
+    @Param({"50"})
+    public int linesPerHunk;
+
+    private final Log log = new NoOpLog();
+    private File diffFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, MojoExecutionException {
+        diffFile = File.createTempFile("codeformatter-benchmark", ".diff");
+        try (BufferedWriter writer = Files.newBufferedWriter(diffFile.toPath(), StandardCharsets.UTF_8)) {
+            for (int i = 0; i < files; i++) {
+                writeFileDiff(writer, "src/main/java/org/example/module" + (i % 100) + "/Generated" + i + ".java");
+            }
+        }
+        // hunk headers not matching their bodies would make the parser resynchronize on content lines
+        int hunks = 0;
+        for (FileChange fileChange : SCMHelper.getDiffChanges(diffFile, log)) {
+            hunks += fileChange.getLineRanges().size();
+        }
+        if (hunks != files * hunksPerFile) {
+            throw new IllegalStateException("Parsed " + hunks + " hunks instead of " + files * hunksPerFile);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(diffFile.toPath());
+    }
+
+    @Benchmark
+    public List<FileChange> getDiffChanges() throws MojoExecutionException {
+        return SCMHelper.getDiffChanges(diffFile, log);
+    }
+
+    private void writeFileDiff(final BufferedWriter writer,
+                               final String path) throws IOException {
+        writer.write("diff --git a/" + path + " b/" + path + "\n");
+        writer.write("index 1234567..89abcde 100644\n");
+        writer.write("--- a/" + path + "\n");
+        writer.write("+++ b/" + path + "\n");
+        // the body cycles removed, added and context lines
+        final int removedLines = (linesPerHunk + 2) / 3;
+        final int addedLines = (linesPerHunk + 1) / 3;
+        final int contextLines = linesPerHunk / 3;
+        final int oldCount = removedLines + contextLines;
+        final int newCount = addedLines + contextLines;
+        for (int hunk = 0; hunk < hunksPerFile; hunk++) {
+            final int oldStart = 1 + hunk * linesPerHunk * 4;
+            final int newStart = oldStart + hunk * (newCount - oldCount);
+            writer.write("@@ -" + oldStart + "," + oldCount + " +" + newStart + "," + newCount + " @@ public class Generated {\n");
+            for (int line = 0; line < linesPerHunk; line++) {
+                switch (line % 3) {
+                    case 0:
+                        writer.write("-        int value" + line + " = compute(" + line + ");\n");
+                        break;
+                    case 1:
+                        writer.write("+        int value" + line + " = compute(" + line + ", true);\n");
+                        break;
+                    default:
+                        writer.write("         return value" + line + ";\n");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.*;
+import org.twdata.maven.mojoexecutor.MojoExecutor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Resolution of the modified files into the change set, and building of the <code>includes</code> passed to the
+ * delegate plugins, see {@link ChangeSet} and {@link ConfigurationHelper#getIncludesElement(List, Log)}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IncludesBenchmark {
+
+    private static final String[] EXCLUDES = {"**/generated/**", "**/*Test.java"};
+
+    @Param({"10", "1000", "10000", "100000"})
+    public int files;
+
+    private final Log log = new NoOpLog();
+    private Path root;
+    private List<File> directories;
+    private List<FileChange> changedFiles;
+    private ChangeSet changeSet;
+    private List<File> absoluteFiles;
+    private List<File> includeFiles;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        root = Files.createTempDirectory("codeformatter-benchmark");
+        directories = Arrays.asList(root.resolve("src/main/java").toFile(), root.resolve("src/test/java").toFile());
+        changedFiles = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            final Path file = directories.get(i % 2).toPath().resolve("org/example/module" + (i % 100) + "/Generated" + i + ".java");
+            Files.createDirectories(file.getParent());
+            Files.createFile(file);
+            changedFiles.add(new FileChange(file.toFile(), Collections.emptyList()));
+        }
+        changeSet = ChangeSet.of(changedFiles, directories, EXCLUDES, log);
+        absoluteFiles = changeSet.getFiles();
+        includeFiles = changeSet.getIncludeFiles(absoluteFiles);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public ChangeSet getChangeSet() {
+        return ChangeSet.of(changedFiles, directories, EXCLUDES, log);
+    }
+
+    @Benchmark
+    public List<File> getIncludeFiles() {
+        return changeSet.getIncludeFiles(absoluteFiles);
+    }
+
+    @Benchmark
+    public MojoExecutor.Element getIncludesElement() {
+        return ConfigurationHelper.getIncludesElement(includeFiles, log);
+    }
+}
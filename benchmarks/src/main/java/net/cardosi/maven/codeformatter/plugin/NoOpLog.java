@@ -0,0 +1,77 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * <code>Log</code> that discards everything, so that benchmarks measure message building but not console output
+ */
+public class NoOpLog implements Log {
+
+    @Override
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+    @Override
+    public void debug(final CharSequence content) {
+    }
+
+    @Override
+    public void debug(final CharSequence content, final Throwable error) {
+    }
+
+    @Override
+    public void debug(final Throwable error) {
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return false;
+    }
+
+    @Override
+    public void info(final CharSequence content) {
+    }
+
+    @Override
+    public void info(final CharSequence content, final Throwable error) {
+    }
+
+    @Override
+    public void info(final Throwable error) {
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return false;
+    }
+
+    @Override
+    public void warn(final CharSequence content) {
+    }
+
+    @Override
+    public void warn(final CharSequence content, final Throwable error) {
+    }
+
+    @Override
+    public void warn(final Throwable error) {
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return false;
+    }
+
+    @Override
+    public void error(final CharSequence content) {
+    }
+
+    @Override
+    public void error(final CharSequence content, final Throwable error) {
+    }
+
+    @Override
+    public void error(final Throwable error) {
+    }
+}
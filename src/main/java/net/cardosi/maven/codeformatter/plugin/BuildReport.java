@@ -0,0 +1,248 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-phase timings and counters of a single plugin execution, written as a JSON report so that formatting cost can
+ * be tracked over time.
+ * <p>
+ * Phases are created on first use and keep their creation order; their counters may be updated concurrently by
+ * parallel batches.
+ */
+public class BuildReport {
+
+    public static final String GIT_STATUS = "gitStatus";
+    public static final String BRANCH_DIFF = "branchDiff";
+    public static final String STAGED = "staged";
+    public static final String WORKTREE_SCAN = "worktreeScan";
+    public static final String SCM_DIFF = "scmDiff";
+    public static final String DIFF_PARSING = "diffParsing";
+    public static final String RESOLUTION = "resolution";
+    public static final String CONFIGURATION = "configuration";
+    public static final String FINGERPRINT = "fingerprint";
+    public static final String RESULT_CACHE = "resultCache";
+    public static final String LINE_RANGES = "lineRanges";
+    public static final String SETUP = "setup";
+    public static final String READ = "read";
+    public static final String IMPORT_SORTING = "importSorting";
+    public static final String FORMATTING = "formatting";
+    public static final String WRITE = "write";
+    public static final String CHECK = "check";
+    public static final String FORMATTER_PLUGIN = "formatterPlugin";
+    public static final String IMPSORT_PLUGIN = "impsortPlugin";
+
+    private final String module;
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Map<String, Integer> moduleFiles = new LinkedHashMap<>();
+    private final Map<File, String> skippedFiles = new LinkedHashMap<>();
+
+    public BuildReport(final String module) {
+        this.module = module;
+    }
+
+    /**
+     * Retrieve the phase with the given name, creating it if needed
+     */
+    public synchronized Phase getPhase(final String name) {
+        return phases.computeIfAbsent(name, Phase::new);
+    }
+
+    /**
+     * Start timing the phase with the given name; the elapsed time is added to the phase when the returned
+     * <code>Timer</code> is closed
+     */
+    public Timer time(final String name) {
+        return new Timer(getPhase(name));
+    }
+
+    /**
+     * Record the number of modified files of a module formatted by this execution
+     */
+    public synchronized void addModule(final String moduleName,
+                                       final int files) {
+        moduleFiles.merge(moduleName, files, Integer::sum);
+    }
+
+    /**
+     * Record a file left untouched because it exceeds a guard, with the reason
+     */
+    public synchronized void addSkippedFile(final File file,
+                                            final String reason) {
+        skippedFiles.put(file, reason);
+    }
+
+    /**
+     * Retrieve the files left untouched because they exceed a guard
+     */
+    public synchronized Set<File> getSkippedFiles() {
+        return new LinkedHashSet<>(skippedFiles.keySet());
+    }
+
+    /**
+     * Write the report, as JSON, to the given file
+     */
+    public void write(final File reportFile,
+                      final Log log) {
+        log.debug("Writing build report to " + reportFile);
+        try {
+            Files.createDirectories(reportFile.getAbsoluteFile().getParentFile().toPath());
+            Files.write(reportFile.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // the report is informational only, so failing to write it must not fail the build
+            log.warn("Failed to write build report to " + reportFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One-line summary of the execution, e.g.
+     * <code>Examined 12 files, changed 3 in 840 ms (gitStatus 35 ms, formatting 610 ms)</code>
+     */
+    public synchronized String getSummary() {
+        final List<String> timings = new ArrayList<>();
+        long filesExamined = 0;
+        long filesChanged = 0;
+        for (Phase phase : phases.values()) {
+            timings.add(phase.name + " " + phase.getMillis() + " ms");
+            filesExamined = Math.max(filesExamined, phase.filesExamined.sum());
+            filesChanged = Math.max(filesChanged, phase.filesChanged.sum());
+        }
+        return "Examined " + filesExamined + " files, changed " + filesChanged +
+                (skippedFiles.isEmpty() ? "" : ", skipped " + skippedFiles.size()) + " in " + getMillis() + " ms" +
+                (timings.isEmpty() ? "" : " (" + String.join(", ", timings) + ")");
+    }
+
+    synchronized String toJson() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("{\n");
+        builder.append("  \"module\": ").append(quote(module)).append(",\n");
+        builder.append("  \"wallClockMillis\": ").append(getMillis()).append(",\n");
+        builder.append("  \"modules\": [");
+        String separator = "\n";
+        for (Map.Entry<String, Integer> entry : moduleFiles.entrySet()) {
+            builder.append(separator).append("    {\"module\": ").append(quote(entry.getKey()))
+                    .append(", \"files\": ").append(entry.getValue()).append("}");
+            separator = ",\n";
+        }
+        builder.append(moduleFiles.isEmpty() ? "],\n" : "\n  ],\n");
+        builder.append("  \"skipped\": [");
+        separator = "\n";
+        for (Map.Entry<File, String> entry : skippedFiles.entrySet()) {
+            builder.append(separator).append("    {\"file\": ").append(quote(entry.getKey().getPath()))
+                    .append(", \"reason\": ").append(quote(entry.getValue())).append("}");
+            separator = ",\n";
+        }
+        builder.append(skippedFiles.isEmpty() ? "],\n" : "\n  ],\n");
+        builder.append("  \"phases\": [");
+        separator = "\n";
+        for (Phase phase : phases.values()) {
+            builder.append(separator).append("    {\"name\": ").append(quote(phase.name))
+                    .append(", \"module\": ").append(quote(module))
+                    .append(", \"cumulativeMillis\": ").append(phase.getMillis())
+                    .append(", \"filesExamined\": ").append(phase.filesExamined.sum())
+                    .append(", \"filesChanged\": ").append(phase.filesChanged.sum())
+                    .append(", \"bytesRead\": ").append(phase.bytesRead.sum())
+                    .append(", \"bytesWritten\": ").append(phase.bytesWritten.sum())
+                    .append("}");
+            separator = ",\n";
+        }
+        builder.append(phases.isEmpty() ? "]\n" : "\n  ]\n");
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private long getMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private static String quote(final String value) {
+        final StringBuilder toReturn = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                toReturn.append('\\').append(c);
+            } else if (c < 0x20) {
+                toReturn.append(String.format("\\u%04x", (int) c));
+            } else {
+                toReturn.append(c);
+            }
+        }
+        return toReturn.append('"').toString();
+    }
+
+    /**
+     * Cumulated time and counters of a phase. When a phase runs in concurrent batches, its time is the sum of the
+     * batches times.
+     */
+    public static class Phase {
+
+        private final String name;
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder filesExamined = new LongAdder();
+        private final LongAdder filesChanged = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+
+        private Phase(final String name) {
+            this.name = name;
+        }
+
+        public void addNanos(final long value) {
+            nanos.add(value);
+        }
+
+        public void addFilesExamined(final long value) {
+            filesExamined.add(value);
+        }
+
+        public void addFilesChanged(final long value) {
+            filesChanged.add(value);
+        }
+
+        public void addBytesRead(final long value) {
+            bytesRead.add(value);
+        }
+
+        public void addBytesWritten(final long value) {
+            bytesWritten.add(value);
+        }
+
+        private long getMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+        }
+    }
+
+    /**
+     * Times a phase from its creation up to its closing
+     */
+    public static class Timer implements AutoCloseable {
+
+        private final Phase phase;
+        private final long startNanos = System.nanoTime();
+
+        private Timer(final Phase phase) {
+            this.phase = phase;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        @Override
+        public void close() {
+            phase.addNanos(System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Shared store of the keys of already formatted contents, see {@link ResultCache}.
+ * <p>
+ * Keys are lowercase hexadecimal hashes of the configuration fingerprint followed by a formatted content; a stored
+ * key only means that the content is known to be formatted with that configuration.
+ *
+ * @see LocalCacheStore
+ * @see HttpCacheStore
+ */
+public interface CacheStore {
+
+    /**
+     * Retrieve which of the given keys are stored
+     */
+    Set<String> getStoredKeys(final Collection<String> keys) throws IOException;
+
+    /**
+     * Store the given keys
+     */
+    void store(final Collection<String> keys) throws IOException;
+}
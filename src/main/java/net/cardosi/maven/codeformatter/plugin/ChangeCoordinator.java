@@ -0,0 +1,90 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.SessionData;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import static net.cardosi.maven.codeformatter.plugin.ReactorHelper.getModifiedFilesByModule;
+
+/**
+ * Session-scoped coordinator of change detection, so that concurrent module builds (<code>mvn -T</code>) neither run
+ * git, nor the <code>maven-scm-plugin</code>, once each.
+ * <p>
+ * The first module asking for a detection runs it once for the whole reactor and splits the changed files by owning
+ * module; the other modules wait for the same result, without any lock, and receive only their own slice.
+ */
+public class ChangeCoordinator {
+
+    private static final String COORDINATOR_KEY = ChangeCoordinator.class.getName();
+
+    private final ConcurrentMap<String, CompletableFuture<Map<MavenProject, List<FileChange>>>> detections = new ConcurrentHashMap<>();
+
+    /**
+     * Detects the changed files of the whole reactor
+     */
+    @FunctionalInterface
+    public interface ChangeDetector {
+
+        List<FileChange> detect() throws MojoExecutionException;
+    }
+
+    private ChangeCoordinator() {
+    }
+
+    /**
+     * Retrieve the coordinator of the given session, creating it if needed
+     */
+    public static ChangeCoordinator getInstance(final MavenSession mavenSession) {
+        final SessionData sessionData = mavenSession.getRepositorySession().getData();
+        sessionData.set(COORDINATOR_KEY, null, new ChangeCoordinator());
+        return (ChangeCoordinator) sessionData.get(COORDINATOR_KEY);
+    }
+
+    /**
+     * Retrieve the changed files owned by <code>module</code>, among the ones detected by <code>changeDetector</code>
+     * for the given reactor <code>projects</code>.
+     *
+     * @param detectionKey identifies the detection, e.g. its strategy and options: modules with the same key share
+     *                     the same detection
+     */
+    public List<FileChange> getModuleChanges(final String detectionKey,
+                                             final List<MavenProject> projects,
+                                             final MavenProject module,
+                                             final ChangeDetector changeDetector,
+                                             final Log log) throws MojoExecutionException {
+        final CompletableFuture<Map<MavenProject, List<FileChange>>> detection = new CompletableFuture<>();
+        final CompletableFuture<Map<MavenProject, List<FileChange>>> existing = detections.putIfAbsent(detectionKey, detection);
+        final Map<MavenProject, List<FileChange>> changedFilesByModule;
+        if (existing == null) {
+            log.info("Detecting changed files of the reactor");
+            try {
+                changedFilesByModule = getModifiedFilesByModule(projects, changeDetector.detect(), log);
+            } catch (MojoExecutionException | RuntimeException e) {
+                detection.completeExceptionally(e);
+                throw e;
+            }
+            detection.complete(changedFilesByModule);
+        } else {
+            log.info("Reusing changed files of the reactor");
+            try {
+                changedFilesByModule = existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MojoExecutionException("Interrupted while waiting for change detection", e);
+            } catch (ExecutionException e) {
+                throw new MojoExecutionException("Change detection failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return changedFilesByModule.getOrDefault(module, Collections.emptyList());
+    }
+}
@@ -0,0 +1,30 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+/**
+ * Strategies available to retrieve the list of locally modified files
+ */
+public enum ChangeDetection {
+
+    /**
+     * Read the git index and object store in-process
+     */
+    GIT,
+    /**
+     * Read in-process the differences between <code>HEAD</code> and its merge-base with a target branch, e.g. to
+     * format the files touched by a pull request on a clean checkout
+     */
+    BRANCH,
+    /**
+     * Format in-process only the files staged in the git index, and stage them again, e.g. from a pre-commit hook
+     */
+    STAGED,
+    /**
+     * Scan the source directories and compare the stat data of each file with the snapshot of the last successful
+     * run, e.g. to format untracked files too, or outside any git repository
+     */
+    WORKTREE,
+    /**
+     * Invoke the <code>maven-scm-plugin</code> <code>diff</code> goal and parse the generated diff file
+     */
+    SCM
+}
@@ -0,0 +1,134 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static net.cardosi.maven.codeformatter.plugin.ConfigurationHelper.isExcluded;
+
+/**
+ * The resolved set of modified files to format, held by absolute path.
+ * <p>
+ * Each modified file is matched to the source directory owning it by walking up its own parents against a hash set of
+ * directories, so building the change set costs only the depth of the modified files, and the source tree is never
+ * walked.
+ */
+public class ChangeSet {
+
+    private final Map<File, FileChange> fileChanges;
+    private final Map<File, Path> owningDirectories;
+
+    private ChangeSet(final Map<File, FileChange> fileChanges,
+                      final Map<File, Path> owningDirectories) {
+        this.fileChanges = fileChanges;
+        this.owningDirectories = owningDirectories;
+    }
+
+    /**
+     * Retain the given absolute <code>changedFiles</code> whose text content changed, that exist, are inside one of
+     * the given <code>directories</code>, and do not match any of the given <code>excludes</code> patterns, relative
+     * to their directory.
+     */
+    public static ChangeSet of(final List<FileChange> changedFiles,
+                               final List<File> directories,
+                               final String[] excludes,
+                               final Log log) {
+        log.info("Resolving " + changedFiles.size() + " changed files against " + directories.size() + " directories");
+        final Set<Path> directoryPaths = new HashSet<>();
+        for (File directory : directories) {
+            directoryPaths.add(getCanonicalPath(directory));
+        }
+        final Map<File, FileChange> fileChanges = new LinkedHashMap<>();
+        final Map<File, Path> owningDirectories = new HashMap<>();
+        for (FileChange changedFile : changedFiles) {
+            if (!changedFile.getChangeType().isFormattable()) {
+                log.debug("Skipping " + changedFile + ": no content to format");
+                continue;
+            }
+            final Path path = getCanonicalPath(changedFile.getFile());
+            Path current = path.getParent();
+            while (current != null && !directoryPaths.contains(current)) {
+                current = current.getParent();
+            }
+            if (current == null || !path.toFile().isFile()) {
+                log.debug("Skipping " + changedFile + ": not in any source directory");
+                continue;
+            }
+            if (isExcluded(current.relativize(path).toFile(), excludes)) {
+                log.debug("Skipping " + changedFile + ": excluded");
+                continue;
+            }
+            final File file = path.toFile();
+            fileChanges.put(file, changedFile.withFile(file));
+            owningDirectories.put(file, current);
+        }
+        log.debug("Change set " + fileChanges.keySet());
+        return new ChangeSet(fileChanges, owningDirectories);
+    }
+
+    public boolean isEmpty() {
+        return fileChanges.isEmpty();
+    }
+
+    public boolean contains(final File file) {
+        return fileChanges.containsKey(file);
+    }
+
+    /**
+     * The modified files, with absolute paths, in detection order
+     */
+    public List<FileChange> getFileChanges() {
+        return new ArrayList<>(fileChanges.values());
+    }
+
+    /**
+     * The absolute paths of the modified files, in detection order
+     */
+    public List<File> getFiles() {
+        return new ArrayList<>(fileChanges.keySet());
+    }
+
+    /**
+     * Retain only the given modified files
+     */
+    public ChangeSet retain(final Collection<File> files) {
+        final Map<File, FileChange> retained = new LinkedHashMap<>(fileChanges);
+        retained.keySet().retainAll(new HashSet<>(files));
+        return new ChangeSet(retained, owningDirectories);
+    }
+
+    /**
+     * The source directories owning at least one of the modified files
+     */
+    public List<File> getDirectories() {
+        final Set<Path> toReturn = new LinkedHashSet<>();
+        for (File file : fileChanges.keySet()) {
+            toReturn.add(owningDirectories.get(file));
+        }
+        final List<File> directories = new ArrayList<>(toReturn.size());
+        toReturn.forEach(path -> directories.add(path.toFile()));
+        return directories;
+    }
+
+    /**
+     * The paths of the given modified files relative to their owning directory, as the delegate plugins expect them
+     */
+    public List<File> getIncludeFiles(final List<File> files) {
+        final List<File> toReturn = new ArrayList<>(files.size());
+        for (File file : files) {
+            toReturn.add(owningDirectories.get(file).relativize(file.toPath()).toFile());
+        }
+        return toReturn;
+    }
+
+    private static Path getCanonicalPath(final File file) {
+        try {
+            return file.getCanonicalFile().toPath();
+        } catch (IOException e) {
+            return file.getAbsoluteFile().toPath();
+        }
+    }
+}
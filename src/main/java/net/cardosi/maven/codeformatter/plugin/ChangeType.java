@@ -0,0 +1,49 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+/**
+ * Kinds of change a modified file may have
+ */
+public enum ChangeType {
+
+    /**
+     * New file, e.g. added or copied
+     */
+    ADDED(true),
+    /**
+     * Existing file whose content changed
+     */
+    MODIFIED(true),
+    /**
+     * File renamed, whose content changed too; the path is the new one
+     */
+    RENAMED(true),
+    /**
+     * File renamed with 100% similarity: its content did not change
+     */
+    MOVED(false),
+    /**
+     * Removed file
+     */
+    DELETED(false),
+    /**
+     * File with binary content
+     */
+    BINARY(false),
+    /**
+     * File whose mode changed, but not its content
+     */
+    MODE_ONLY(false);
+
+    private final boolean formattable;
+
+    ChangeType(final boolean formattable) {
+        this.formattable = formattable;
+    }
+
+    /**
+     * Whether files with this kind of change have new text content, that has to be formatted
+     */
+    public boolean isFormattable() {
+        return formattable;
+    }
+}
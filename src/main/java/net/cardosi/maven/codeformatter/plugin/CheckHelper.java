@@ -0,0 +1,157 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.diff.HistogramDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class responsible of verifying, without writing anything, whether files are already formatted
+ */
+public class CheckHelper {
+
+    private CheckHelper() {
+    }
+
+    /**
+     * Formats in memory the content of a file
+     */
+    @FunctionalInterface
+    public interface ContentFormatter {
+
+        /**
+         * @return the formatted content, equal to the given one if the file is already formatted
+         */
+        byte[] format(final File file, final byte[] content) throws Exception;
+    }
+
+    /**
+     * Creates the <code>ContentFormatter</code> of a single worker, since formatters are not thread-safe
+     */
+    @FunctionalInterface
+    public interface ContentFormatterFactory {
+
+        ContentFormatter create() throws Exception;
+    }
+
+    /**
+     * Format in memory the given <code>batches</code>, concurrently with at most <code>threads</code> workers, and
+     * compare the results with the files on disk.
+     * <p>
+     * With <code>failFast</code>, all workers stop at the first violation found, so only the files checked so far
+     * are reported. Violations are logged in path order, each one with its unified diff if <code>showDiff</code> is
+     * enabled.
+     *
+     * @return the files that are not formatted, in path order
+     */
+    public static List<File> checkBatches(final List<List<File>> batches,
+                                          final int threads,
+                                          final ContentFormatterFactory contentFormatterFactory,
+                                          final boolean failFast,
+                                          final boolean showDiff,
+                                          final BuildReport report,
+                                          final Log log) throws MojoExecutionException {
+        log.info("Checking " + batches.size() + " batches with " + threads + " threads");
+        final Map<File, String> violations = new ConcurrentSkipListMap<>();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(batches.size());
+            for (List<File> batch : batches) {
+                futures.add(executorService.submit(() -> {
+                    checkBatch(batch, contentFormatterFactory.create(), failFast, showDiff, stop, violations, report, log);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while checking", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to check: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        violations.forEach((file, diff) -> {
+            log.error("File not formatted: " + file);
+            if (showDiff) {
+                log.error(diff);
+            }
+        });
+        return new ArrayList<>(violations.keySet());
+    }
+
+    private static void checkBatch(final List<File> batch,
+                                   final ContentFormatter contentFormatter,
+                                   final boolean failFast,
+                                   final boolean showDiff,
+                                   final AtomicBoolean stop,
+                                   final Map<File, String> violations,
+                                   final BuildReport report,
+                                   final Log log) throws Exception {
+        for (File file : batch) {
+            if (stop.get()) {
+                log.debug("Stopping check before " + file);
+                return;
+            }
+            final byte[] content;
+            try (BuildReport.Timer timer = report.time(BuildReport.READ)) {
+                content = Files.readAllBytes(file.toPath());
+                timer.getPhase().addFilesExamined(1);
+                timer.getPhase().addBytesRead(content.length);
+            }
+            final byte[] formatted;
+            try {
+                formatted = contentFormatter.format(file, content);
+            } catch (Exception e) {
+                throw new MojoExecutionException("Failed to check " + file + ": " + e.getMessage(), e);
+            }
+            try (BuildReport.Timer timer = report.time(BuildReport.CHECK)) {
+                timer.getPhase().addFilesExamined(1);
+                if (!Arrays.equals(content, formatted)) {
+                    timer.getPhase().addFilesChanged(1);
+                    violations.put(file, showDiff ? getUnifiedDiff(file, content, formatted) : "");
+                    if (failFast) {
+                        stop.set(true);
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Unified diff, with three lines of context, turning <code>content</code> into <code>formatted</code>
+     */
+    static String getUnifiedDiff(final File file,
+                                 final byte[] content,
+                                 final byte[] formatted) throws IOException {
+        final RawText original = new RawText(content);
+        final RawText updated = new RawText(formatted);
+        final EditList edits = new HistogramDiff().diff(RawTextComparator.DEFAULT, original, updated);
+        final ByteArrayOutputStream toReturn = new ByteArrayOutputStream();
+        toReturn.write(("--- " + file + "\n+++ " + file + "\n").getBytes(StandardCharsets.UTF_8));
+        try (DiffFormatter diffFormatter = new DiffFormatter(toReturn)) {
+            diffFormatter.format(edits, original, updated);
+        }
+        return new String(toReturn.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
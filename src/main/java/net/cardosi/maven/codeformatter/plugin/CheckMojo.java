@@ -0,0 +1,108 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.Formatter;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static net.cardosi.maven.codeformatter.plugin.CheckHelper.checkBatches;
+import static net.cardosi.maven.codeformatter.plugin.ParallelHelper.getBatches;
+import static net.cardosi.maven.codeformatter.plugin.PipelineHelper.processCode;
+
+/**
+ * Verify, without writing anything, that the modified files of the current module are formatted and impsorted.
+ * <p>
+ * The goal uses the same change detection and configuration of the <code>format</code> goal; files are formatted in
+ * memory by <code>threads</code> concurrent workers and compared with their content on disk. Whole files are
+ * verified, even when <code>modifiedLinesOnly</code> is enabled. Files found in the result cache, or in the cache
+ * store, are not verified again, and verified files are added to them.
+ */
+@Mojo(name = "check", defaultPhase = LifecyclePhase.VALIDATE, requiresProject = true, threadSafe = true)
+public class CheckMojo extends FormatMojo {
+
+    // Check
+
+    /**
+     * Whether all workers should stop at the first file that is not formatted, instead of reporting all of them.
+     */
+    @Parameter(defaultValue = "false", property = "failFast")
+    private boolean failFast;
+
+    /**
+     * Whether the unified diff between each file that is not formatted and its formatted content should be logged.
+     */
+    @Parameter(defaultValue = "false", property = "showDiff")
+    private boolean showDiff;
+
+    @Override
+    protected void processChangedFiles() throws MojoExecutionException, MojoFailureException {
+        final Optional<ChangeSet> changeSet = getChangeSet();
+        if (!changeSet.isPresent()) {
+            saveWorktreeSnapshot(Collections.emptyList(), Collections.emptyList());
+            return;
+        }
+        final BuildReport report = getReport();
+        final Charset encoding = getEncoding();
+        final int workers = getWorkers();
+        final ResultCache cache = loadResultCache();
+        final ChangeSet toCheck;
+        try {
+            toCheck = cache != null ? getUncachedChangeSet(changeSet.get(), cache) : changeSet.get();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read result cache", e);
+        }
+        final List<File> violations = toCheck.isEmpty() ? Collections.emptyList() : checkBatches(getBatches(toCheck.getFiles(), workers, getLog()),
+                workers,
+                () -> {
+                    final Map<String, Formatter> formatters;
+                    final ImpSort impSort;
+                    final BuildReport.Timer setupTimer = report.time(BuildReport.SETUP);
+                    try {
+                        formatters = createFormatters();
+                        impSort = createImpSort();
+                    } finally {
+                        setupTimer.close();
+                    }
+                    return (file, content) -> processCode(file,
+                            new String(content, encoding),
+                            false,
+                            formatters,
+                            impSort,
+                            getLineEnding(),
+                            report,
+                            getLog()).getBytes(encoding);
+                },
+                failFast,
+                showDiff,
+                report,
+                getLog());
+        if (cache != null && (violations.isEmpty() || !failFast)) {
+            // with failFast, files after the first violation may not have been checked at all
+            final List<File> verified = new ArrayList<>(toCheck.getFiles());
+            verified.removeAll(violations);
+            try {
+                updateResultCache(toCheck.retain(verified), cache);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to update result cache", e);
+            }
+        }
+        // unverified files are scanned again, like the ones not formatted
+        saveWorktreeSnapshot(changeSet.get().getFiles(), failFast && !violations.isEmpty() ? toCheck.getFiles() : violations);
+        if (!violations.isEmpty()) {
+            throw new MojoFailureException(violations.size() + " files are not formatted: " + violations);
+        }
+        getLog().info("All modified files are formatted");
+    }
+}
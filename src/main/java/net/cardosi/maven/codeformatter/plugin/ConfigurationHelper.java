@@ -1,33 +1,42 @@
 
 package net.cardosi.maven.codeformatter.plugin;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.PluginParameterExpressionEvaluator;
 import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluationException;
 import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.util.SelectorUtils;
+import org.eclipse.aether.SessionData;
 import org.twdata.maven.mojoexecutor.MojoExecutor;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
-import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.*;
 
 public class ConfigurationHelper {
 
-    private static final String INCLUDES = "includes";
+    public static final String INCLUDES = "includes";
+    public static final String DIRECTORIES = "directories";
+    public static final String CACHEDIR = "cachedir";
+    private static final String DIRECTORY = "directory";
+    private static final String TEMPLATES_KEY = ConfigurationHelper.class.getName() + ".templates";
 
-    private static final List<String> FORMATTER_PARAMETERS = Arrays.asList("sourceDirectory",
+    private static final Set<String> FORMATTER_PARAMETERS = new HashSet<>(Arrays.asList("sourceDirectory",
             "testSourceDirectory",
             "targetDirectory",
             "basedir",
-            "cachedir",
-            "directories",
+            CACHEDIR,
+            DIRECTORIES,
             INCLUDES,
             "excludes",
             "compilerSource",
@@ -49,9 +58,9 @@ public class ConfigurationHelper {
             "skipCssFormatting",
             "skipFormatting",
             "useEclipseDefaults",
-            "javaExclusionPattern");
+            "javaExclusionPattern"));
 
-    private static final List<String> IMPSORT_PARAMETERS = Arrays.asList("sourceEncoding",
+    private static final Set<String> IMPSORT_PARAMETERS = new HashSet<>(Arrays.asList("sourceEncoding",
             "skip",
             "staticGroups",
             "groups",
@@ -59,52 +68,74 @@ public class ConfigurationHelper {
             "joinStaticWithNonStatic",
             "sourceDirectory",
             "testSourceDirectory",
-            "directories",
-            "includes",
+            DIRECTORIES,
+            INCLUDES,
             "excludes",
             "removeUnused",
             "treatSamePackageAsUnused",
             "breadthFirstComparator",
             "lineEnding",
             "compliance"
-    );
+    ));
 
 
     private ConfigurationHelper() {
     }
 
     public static Element[] getFormatterConfigurationElements(final MojoExecutor.Element includes,
-                                                              final PlexusConfiguration pomConfiguration,
-                                                              final PluginParameterExpressionEvaluator expressionEvaluator,
-                                                              final Log log) throws ExpressionEvaluationException {
+                                                              final Map<String, MojoExecutor.Element> overrides,
+                                                              final ConfigurationSnapshot configurationSnapshot,
+                                                              final Log log) {
         log.info("Executing getFormatterConfigurationElements");
-        final List<PlexusConfiguration> plexusConfigurations = getPlexusConfigurations(pomConfiguration, FORMATTER_PARAMETERS, log);
-        return getConfigurationElements(includes, plexusConfigurations, expressionEvaluator, log);
+        return configurationSnapshot.getConfigurationElements(FORMATTER_PARAMETERS, includes, overrides, log);
     }
 
     public static Element[] getImpsortConfigurationElements(final MojoExecutor.Element includes,
-                                                            final PlexusConfiguration pomConfiguration,
-                                                            final PluginParameterExpressionEvaluator expressionEvaluator,
-                                                            final Log log) throws ExpressionEvaluationException {
+                                                            final Map<String, MojoExecutor.Element> overrides,
+                                                            final ConfigurationSnapshot configurationSnapshot,
+                                                            final Log log) {
         log.info("Executing getImpsortConfigurationElements");
-        final List<PlexusConfiguration> plexusConfigurations = getPlexusConfigurations(pomConfiguration, IMPSORT_PARAMETERS, log);
-        return getConfigurationElements(includes, plexusConfigurations, expressionEvaluator, log);
+        return configurationSnapshot.getConfigurationElements(IMPSORT_PARAMETERS, includes, overrides, log);
     }
 
-    private static Element[] getConfigurationElements(final MojoExecutor.Element includes,
-                                                      final List<PlexusConfiguration> plexusConfigurations,
-                                                      final PluginParameterExpressionEvaluator expressionEvaluator,
-                                                      final Log log) throws ExpressionEvaluationException {
-        log.info("Executing getConfigurationElements");
-        List<MojoExecutor.Element> tmpList = new ArrayList<>();
-        for (PlexusConfiguration plexusConfiguration : plexusConfigurations) {
-            if (plexusConfiguration.getName().equals(INCLUDES)) {
-                tmpList.add(includes);
-            } else {
-                getElement(plexusConfiguration, expressionEvaluator, log).ifPresent(tmpList::add);
-            }
-        }
-        return tmpList.toArray(new Element[0]);
+    /**
+     * Retrieve the evaluated configuration of the delegate plugins parameters, and of the given
+     * <code>parameters</code>, for the module of the given <code>expressionEvaluator</code>.
+     * <p>
+     * The unevaluated configuration is compiled once per session and shared by all the modules with the same mojo
+     * configuration, also when built concurrently; expressions that do not depend on the module are evaluated only
+     * once for all of them.
+     */
+    public static ConfigurationSnapshot getConfigurationSnapshot(final PlexusConfiguration pomConfiguration,
+                                                                 final List<String> parameters,
+                                                                 final PluginParameterExpressionEvaluator expressionEvaluator,
+                                                                 final MavenSession mavenSession,
+                                                                 final MavenProject mavenProject,
+                                                                 final Log log) throws ExpressionEvaluationException {
+        log.info("Executing getConfigurationSnapshot");
+        final Set<String> snapshotParameters = new HashSet<>(parameters);
+        snapshotParameters.addAll(FORMATTER_PARAMETERS);
+        snapshotParameters.addAll(IMPSORT_PARAMETERS);
+        final ConfigurationSnapshot.Template template = new ConfigurationSnapshot.Template(pomConfiguration, snapshotParameters);
+        final ConcurrentMap<String, ConfigurationSnapshot.Template> templates = getTemplates(mavenSession);
+        final ConfigurationSnapshot.Template existing = templates.putIfAbsent(template.getKey(), template);
+        return (existing != null ? existing : template).bind(expressionEvaluator, mavenProject.getProperties(), log);
+    }
+
+    /**
+     * Retrieve the evaluated value of the delegate plugins parameters, and of the given <code>parameters</code>,
+     * sorted by name. Multi-valued parameters are joined with commas; <code>includes</code> and
+     * <code>cachedir</code>, that change between invocations, are ignored.
+     */
+    public static SortedMap<String, String> getEvaluatedConfiguration(final ConfigurationSnapshot configurationSnapshot,
+                                                                      final List<String> parameters,
+                                                                      final Log log) {
+        log.info("Executing getEvaluatedConfiguration");
+        final Set<String> evaluatedParameters = new HashSet<>(parameters);
+        evaluatedParameters.addAll(FORMATTER_PARAMETERS);
+        evaluatedParameters.addAll(IMPSORT_PARAMETERS);
+        evaluatedParameters.removeAll(Arrays.asList(INCLUDES, CACHEDIR));
+        return configurationSnapshot.getEvaluatedConfiguration(evaluatedParameters);
     }
 
     public static Element getIncludesElement(final List<File> files,
@@ -117,24 +148,43 @@ public class ConfigurationHelper {
         return element(name(INCLUDES), children);
     }
 
-    private static Optional<Element> getElement(final PlexusConfiguration plexusConfiguration,
-                                                final PluginParameterExpressionEvaluator expressionEvaluator,
-                                                final Log log) throws ExpressionEvaluationException {
-        log.debug("getElement " + plexusConfiguration);
-        String value = plexusConfiguration.getValue();
-        String defaultValue = plexusConfiguration.getAttribute("default-value");
-        String configurationName = plexusConfiguration.getName();
-        String evaluated = defaultIfNull(expressionEvaluator.evaluate(defaultIfBlank(value, defaultValue)), "").toString();
-        return evaluated.isEmpty() ? Optional.empty() : Optional.of(element(name(configurationName), evaluated));
+    /**
+     * Whether the given include file matches any of the given <code>excludes</code> patterns, the same way the
+     * delegate plugins would exclude it.
+     */
+    public static boolean isExcluded(final File includeFile,
+                                     final String[] excludes) {
+        if (excludes == null) {
+            return false;
+        }
+        for (String exclude : excludes) {
+            if (SelectorUtils.matchPath(exclude, includeFile.getPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static Element getDirectoriesElement(final List<File> directories,
+                                                final Log log) {
+        log.debug("getDirectoriesElement " + directories);
+        MojoExecutor.Element[] children = new MojoExecutor.Element[directories.size()];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = new MojoExecutor.Element(DIRECTORY, directories.get(i).getAbsolutePath());
+        }
+        return element(name(DIRECTORIES), children);
     }
 
-    private static List<PlexusConfiguration> getPlexusConfigurations(final PlexusConfiguration pomConfiguration,
-                                                                     final List<String> parameters,
-                                                                     final Log log) {
-        log.debug("getPlexusConfigurations");
-        return Arrays.stream(pomConfiguration.getChildren())
-                .filter(plexusConfiguration -> parameters.contains(plexusConfiguration.getName()))
-                .collect(Collectors.toList());
+    public static Element getCachedirElement(final File cachedir,
+                                             final Log log) {
+        log.debug("getCachedirElement " + cachedir);
+        return element(name(CACHEDIR), cachedir.getAbsolutePath());
+    }
 
+    @SuppressWarnings("unchecked")
+    private static ConcurrentMap<String, ConfigurationSnapshot.Template> getTemplates(final MavenSession mavenSession) {
+        final SessionData sessionData = mavenSession.getRepositorySession().getData();
+        sessionData.set(TEMPLATES_KEY, null, new ConcurrentHashMap<String, ConfigurationSnapshot.Template>());
+        return (ConcurrentMap<String, ConfigurationSnapshot.Template>) sessionData.get(TEMPLATES_KEY);
     }
 }
@@ -0,0 +1,256 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.PluginParameterExpressionEvaluator;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluationException;
+import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.twdata.maven.mojoexecutor.MojoExecutor;
+import org.twdata.maven.mojoexecutor.MojoExecutor.Element;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static org.apache.commons.lang3.ObjectUtils.defaultIfNull;
+import static org.apache.commons.lang3.StringUtils.defaultIfBlank;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
+import static org.twdata.maven.mojoexecutor.MojoExecutor.name;
+
+/**
+ * Immutable, evaluated configuration of the delegate plugins parameters, in the order of the mojo configuration.
+ * <p>
+ * A snapshot is safe to share between threads; it is compiled from a <code>Template</code>, that is in turn shared by
+ * all the modules with the same mojo configuration.
+ */
+public class ConfigurationSnapshot {
+
+    /**
+     * Expression roots whose value depends on the module, or on the mojo execution, being built
+     */
+    private static final Set<String> MODULE_ROOTS = new HashSet<>(Arrays.asList("project",
+            "pom",
+            "basedir",
+            "executedProject",
+            "mojo",
+            "mojoExecution",
+            "plugin"));
+
+    private final List<Parameter> parameters;
+
+    private ConfigurationSnapshot(final List<Parameter> parameters) {
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    /**
+     * Retrieve the configuration elements of the given delegate plugin parameters; <code>includes</code> and
+     * <code>overrides</code> replace the configured values
+     */
+    public Element[] getConfigurationElements(final Collection<String> delegateParameters,
+                                              final MojoExecutor.Element includes,
+                                              final Map<String, MojoExecutor.Element> overrides,
+                                              final Log log) {
+        log.debug("getConfigurationElements " + delegateParameters);
+        final List<Element> toReturn = new ArrayList<>();
+        for (Parameter parameter : parameters) {
+            if (!delegateParameters.contains(parameter.name)) {
+                continue;
+            }
+            if (parameter.name.equals(ConfigurationHelper.INCLUDES)) {
+                toReturn.add(includes);
+            } else if (overrides.containsKey(parameter.name)) {
+                toReturn.add(overrides.get(parameter.name));
+            } else if (parameter.element != null) {
+                toReturn.add(parameter.element);
+            }
+        }
+        return toReturn.toArray(new Element[0]);
+    }
+
+    /**
+     * Retrieve the evaluated value of the given parameters, sorted by name; multi-valued parameters are joined with
+     * commas
+     */
+    public SortedMap<String, String> getEvaluatedConfiguration(final Collection<String> evaluatedParameters) {
+        final SortedMap<String, String> toReturn = new TreeMap<>();
+        for (Parameter parameter : parameters) {
+            if (evaluatedParameters.contains(parameter.name)) {
+                toReturn.put(parameter.name, parameter.joinedValue);
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Whether the given raw value references an expression that depends on the module being built: a project or
+     * mojo expression, or a property the module itself defines
+     */
+    static boolean isModuleScoped(final String rawValue,
+                                  final Properties projectProperties) {
+        int start = rawValue.indexOf("${");
+        while (start >= 0) {
+            final int end = rawValue.indexOf('}', start);
+            if (end < 0) {
+                return true;
+            }
+            final String expression = rawValue.substring(start + 2, end);
+            final int dot = expression.indexOf('.');
+            if (MODULE_ROOTS.contains(dot < 0 ? expression : expression.substring(0, dot)) || projectProperties.containsKey(expression)) {
+                return true;
+            }
+            start = rawValue.indexOf("${", end);
+        }
+        return false;
+    }
+
+    /**
+     * The unevaluated delegate plugins parameters of a mojo configuration.
+     * <p>
+     * Values without expressions are never evaluated; values whose expressions do not depend on the module are
+     * evaluated once for all modules; the other ones once per binding. Bindings with the same module values share the
+     * same snapshot.
+     */
+    static class Template {
+
+        private final List<RawParameter> rawParameters;
+        private final String key;
+        private final ConcurrentMap<String, String> sessionValues = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Map<String, String>, ConfigurationSnapshot> snapshots = new ConcurrentHashMap<>();
+
+        Template(final PlexusConfiguration pomConfiguration,
+                 final Collection<String> parameters) {
+            rawParameters = new ArrayList<>();
+            for (PlexusConfiguration plexusConfiguration : pomConfiguration.getChildren()) {
+                if (parameters.contains(plexusConfiguration.getName())) {
+                    rawParameters.add(new RawParameter(plexusConfiguration));
+                }
+            }
+            final StringBuilder builder = new StringBuilder();
+            for (RawParameter rawParameter : rawParameters) {
+                builder.append(rawParameter.name).append('=').append(rawParameter.rawValue);
+                if (rawParameter.rawChildValues != null) {
+                    builder.append(rawParameter.rawChildValues);
+                }
+                builder.append('\n');
+            }
+            key = builder.toString();
+        }
+
+        /**
+         * The unevaluated parameters, so that templates of identical configurations have the same key
+         */
+        String getKey() {
+            return key;
+        }
+
+        /**
+         * Evaluate the parameters for the module of the given <code>expressionEvaluator</code>
+         */
+        ConfigurationSnapshot bind(final PluginParameterExpressionEvaluator expressionEvaluator,
+                                   final Properties projectProperties,
+                                   final Log log) throws ExpressionEvaluationException {
+            final Map<String, String> moduleValues = new TreeMap<>();
+            final Map<String, String> values = new HashMap<>();
+            for (RawParameter rawParameter : rawParameters) {
+                for (String rawValue : rawParameter.getRawValues()) {
+                    if (rawValue == null || rawValue.indexOf('$') < 0 || values.containsKey(rawValue)) {
+                        continue;
+                    }
+                    final String value;
+                    if (isModuleScoped(rawValue, projectProperties)) {
+                        value = evaluate(rawValue, expressionEvaluator);
+                        moduleValues.put(rawValue, value);
+                    } else {
+                        final String sessionValue = sessionValues.get(rawValue);
+                        value = sessionValue != null ? sessionValue : evaluate(rawValue, expressionEvaluator);
+                        sessionValues.putIfAbsent(rawValue, value);
+                    }
+                    values.put(rawValue, value);
+                }
+            }
+            log.debug("Evaluated " + moduleValues.size() + " module expressions, " + (values.size() - moduleValues.size()) + " session expressions");
+            return snapshots.computeIfAbsent(moduleValues, key -> {
+                final List<Parameter> parameters = new ArrayList<>(rawParameters.size());
+                for (RawParameter rawParameter : rawParameters) {
+                    parameters.add(rawParameter.toParameter(values));
+                }
+                return new ConfigurationSnapshot(parameters);
+            });
+        }
+
+        private static String evaluate(final String rawValue,
+                                       final PluginParameterExpressionEvaluator expressionEvaluator) throws ExpressionEvaluationException {
+            return defaultIfNull(expressionEvaluator.evaluate(rawValue), "").toString();
+        }
+    }
+
+    private static class RawParameter {
+
+        private final String name;
+        private final String rawValue;
+        private final List<String> rawChildValues;
+
+        private RawParameter(final PlexusConfiguration plexusConfiguration) {
+            name = plexusConfiguration.getName();
+            rawValue = getRawValue(plexusConfiguration);
+            if (plexusConfiguration.getChildCount() > 0) {
+                rawChildValues = new ArrayList<>();
+                for (PlexusConfiguration child : plexusConfiguration.getChildren()) {
+                    rawChildValues.add(getRawValue(child));
+                }
+            } else {
+                rawChildValues = null;
+            }
+        }
+
+        private List<String> getRawValues() {
+            if (rawChildValues == null) {
+                return Collections.singletonList(rawValue);
+            }
+            final List<String> toReturn = new ArrayList<>(rawChildValues);
+            toReturn.add(rawValue);
+            return toReturn;
+        }
+
+        private Parameter toParameter(final Map<String, String> values) {
+            final String value = getValue(rawValue, values);
+            final String joinedValue;
+            if (rawChildValues != null) {
+                final List<String> childValues = new ArrayList<>(rawChildValues.size());
+                for (String rawChildValue : rawChildValues) {
+                    childValues.add(getValue(rawChildValue, values));
+                }
+                joinedValue = String.join(",", childValues);
+            } else {
+                joinedValue = value;
+            }
+            return new Parameter(name, value.isEmpty() ? null : element(name(name), value), joinedValue);
+        }
+
+        private static String getRawValue(final PlexusConfiguration plexusConfiguration) {
+            return defaultIfBlank(plexusConfiguration.getValue(), plexusConfiguration.getAttribute("default-value"));
+        }
+
+        private static String getValue(final String rawValue,
+                                       final Map<String, String> values) {
+            if (rawValue == null) {
+                return "";
+            }
+            return values.getOrDefault(rawValue, rawValue);
+        }
+    }
+
+    private static class Parameter {
+
+        private final String name;
+        private final Element element;
+        private final String joinedValue;
+
+        private Parameter(final String name,
+                          final Element element,
+                          final String joinedValue) {
+            this.name = name;
+            this.element = element;
+            this.joinedValue = joinedValue;
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming parser of unified diffs, working directly on the bytes read from a file channel.
+ * <p>
+ * Each file diff becomes a typed {@link FileChange}, classified from its git extended headers (new, deleted, renamed,
+ * copied, mode-only and binary files) or from the <code>/dev/null</code> sides of plain unified diffs.
+ * <p>
+ * Paths with special characters, C-quoted by git (e.g. <code>"a/caf\303\251.java"</code>), are unquoted.
+ * <p>
+ * Only header lines are buffered and only file paths are materialized: hunk bodies are skipped using the line counts
+ * of their <code>@@</code> header, looking at the first byte of each line, so that the cost of a diff does not depend
+ * on the size of its hunks and no object is allocated for content lines.
+ */
+public class DiffParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] DIFF_GIT_PREFIX = "diff --git ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OLD_FILE_PREFIX = "--- ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OLD_DEV_NULL = "--- /dev/null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEW_FILE_PREFIX = "+++ ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEW_DEV_NULL = "+++ /dev/null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEW_FILE_MODE = "new file mode ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DELETED_FILE_MODE = "deleted file mode ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OLD_MODE = "old mode ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FULL_SIMILARITY = "similarity index 100%".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RENAME_TO = "rename to ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COPY_TO = "copy to ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BINARY_FILES = "Binary files ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GIT_BINARY_PATCH = "GIT binary patch".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HUNK_PREFIX = "@@ -".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OLD_PATH_PREFIX = "a/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEW_PATH_SEPARATOR = " b/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTED_NEW_PATH_SEPARATOR = " \"b/".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private boolean endOfInput;
+
+    private DiffParser(final FileChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * Parse the given unified diff file into the typed changes of each file, with paths relative to the diff root
+     */
+    public static List<FileChange> parse(final File diffFile,
+                                         final Log log) throws MojoExecutionException {
+        log.info("Reading file " + diffFile);
+        try (FileChannel channel = FileChannel.open(diffFile.toPath(), StandardOpenOption.READ)) {
+            return new DiffParser(channel).parse();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read diff file " + diffFile, e);
+        }
+    }
+
+    private List<FileChange> parse() throws IOException {
+        final Map<String, FileChange> toReturn = new LinkedHashMap<>();
+        FileHeader current = null;
+        while (readLine()) {
+            if (startsWith(DIFF_GIT_PREFIX)) {
+                // every file diff starts a new header, even when its paths cannot be read
+                addFileChange(toReturn, current);
+                current = new FileHeader(getDiffGitPath(), true);
+            } else if (startsWith(OLD_DEV_NULL) || startsWith(OLD_FILE_PREFIX) && isSidePath(OLD_FILE_PREFIX.length, 'a')) {
+                if (current == null || !current.git) {
+                    // plain unified diffs have no "diff --git" line: each file starts at its old side header
+                    addFileChange(toReturn, current);
+                    current = new FileHeader(startsWith(OLD_DEV_NULL) ? null : getSidePath(OLD_FILE_PREFIX.length, 'a'), false);
+                }
+                current.added |= startsWith(OLD_DEV_NULL);
+            } else if (current == null) {
+                continue;
+            } else if (startsWith(HUNK_PREFIX)) {
+                final int[] hunk = getHunk();
+                if (hunk != null) {
+                    current.lineRanges.add(getLineRange(hunk[2], hunk[3]));
+                    skipHunkBody(hunk[1], hunk[3]);
+                }
+            } else if (startsWith(NEW_DEV_NULL) || startsWith(DELETED_FILE_MODE)) {
+                current.deleted = true;
+            } else if (startsWith(NEW_FILE_PREFIX) && isSidePath(NEW_FILE_PREFIX.length, 'b')) {
+                current.path = getSidePath(NEW_FILE_PREFIX.length, 'b');
+            } else if (startsWith(NEW_FILE_MODE)) {
+                current.added = true;
+            } else if (startsWith(OLD_MODE)) {
+                current.modeChanged = true;
+            } else if (startsWith(FULL_SIMILARITY)) {
+                current.unchangedContent = true;
+            } else if (startsWith(RENAME_TO)) {
+                current.renamed = true;
+                current.path = getPath(RENAME_TO.length);
+            } else if (startsWith(COPY_TO)) {
+                current.added = true;
+                current.path = getPath(COPY_TO.length);
+            } else if (startsWith(BINARY_FILES) || startsWith(GIT_BINARY_PATCH)) {
+                current.binary = true;
+            }
+        }
+        addFileChange(toReturn, current);
+        return new ArrayList<>(toReturn.values());
+    }
+
+    private static void addFileChange(final Map<String, FileChange> fileChanges,
+                                      final FileHeader fileHeader) {
+        if (fileHeader != null && fileHeader.path != null) {
+            fileChanges.put(fileHeader.path, new FileChange(new File(fileHeader.path), fileHeader.lineRanges, fileHeader.getChangeType()));
+        }
+    }
+
+    /**
+     * Skip the lines of an hunk body: context lines count on both sides, removed lines on the old side only and added
+     * lines on the new side only
+     */
+    private void skipHunkBody(final int oldCount,
+                              final int newCount) throws IOException {
+        int oldRemaining = oldCount;
+        int newRemaining = newCount;
+        while (oldRemaining > 0 || newRemaining > 0) {
+            final int first = skipLine();
+            if (first < 0) {
+                return;
+            }
+            switch (first) {
+                case '-':
+                    oldRemaining--;
+                    break;
+                case '+':
+                    newRemaining--;
+                    break;
+                case '\\':
+                    // "\ No newline at end of file"
+                    break;
+                default:
+                    // context line; some tools strip the leading space of empty context lines
+                    oldRemaining--;
+                    newRemaining--;
+            }
+        }
+    }
+
+    /**
+     * The new-side line range of an hunk; a count of zero means that lines have only been removed after start
+     */
+    private static LineRange getLineRange(final int start,
+                                          final int count) {
+        return count > 0 ? new LineRange(start, start + count - 1) : new LineRange(Math.max(1, start), start + 1);
+    }
+
+    /**
+     * Parse the current hunk header, e.g. <code>@@ -10,7 +10,8 @@</code>, into old start, old count, new start and
+     * new count; returns <code>null</code> if the header is malformed
+     */
+    private int[] getHunk() {
+        final int[] toReturn = new int[4];
+        int position = HUNK_PREFIX.length;
+        for (int side = 0; side < 2; side++) {
+            if (side == 1) {
+                if (position + 1 >= lineLength || line[position] != ' ' || line[position + 1] != '+') {
+                    return null;
+                }
+                position += 2;
+            }
+            final int start = position;
+            int value = 0;
+            while (position < lineLength && line[position] >= '0' && line[position] <= '9') {
+                value = value * 10 + line[position++] - '0';
+            }
+            if (position == start) {
+                return null;
+            }
+            toReturn[side * 2] = value;
+            toReturn[side * 2 + 1] = 1;
+            if (position < lineLength && line[position] == ',') {
+                position++;
+                value = 0;
+                while (position < lineLength && line[position] >= '0' && line[position] <= '9') {
+                    value = value * 10 + line[position++] - '0';
+                }
+                toReturn[side * 2 + 1] = value;
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * The old path of a <code>diff --git a/path b/path</code> header; when both sides are equal, paths may contain
+     * spaces. Returns <code>null</code> if the path cannot be read.
+     */
+    private String getDiffGitPath() {
+        final int start = DIFF_GIT_PREFIX.length;
+        if (start < lineLength && line[start] == '"') {
+            return stripSide(unquote(start), 'a');
+        }
+        if (!regionMatches(start, OLD_PATH_PREFIX)) {
+            return null;
+        }
+        final int pathStart = start + OLD_PATH_PREFIX.length;
+        final int length = getContentLength() - pathStart;
+        final int half = (length - NEW_PATH_SEPARATOR.length) / 2;
+        if (half > 0 && length == half * 2 + NEW_PATH_SEPARATOR.length &&
+                regionMatches(pathStart + half, NEW_PATH_SEPARATOR) &&
+                halvesMatch(pathStart, half, pathStart + half + NEW_PATH_SEPARATOR.length)) {
+            return new String(line, pathStart, half, StandardCharsets.UTF_8);
+        }
+        int end = pathStart;
+        while (end < pathStart + length && !regionMatches(end, NEW_PATH_SEPARATOR) && !regionMatches(end, QUOTED_NEW_PATH_SEPARATOR)) {
+            end++;
+        }
+        return new String(line, pathStart, end - pathStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether the line has a path of the given side, <code>a</code> or <code>b</code>, at <code>start</code>,
+     * either plain or C-quoted
+     */
+    private boolean isSidePath(final int start,
+                               final char side) {
+        final int offset = start < lineLength && line[start] == '"' ? start + 1 : start;
+        return offset + 1 < lineLength && line[offset] == side && line[offset + 1] == '/';
+    }
+
+    /**
+     * The path of the given side at <code>start</code>, without its <code>a/</code> or <code>b/</code> prefix
+     */
+    private String getSidePath(final int start,
+                               final char side) {
+        return stripSide(getPath(start), side);
+    }
+
+    private static String stripSide(final String path,
+                                    final char side) {
+        return path != null && path.length() > 2 && path.charAt(0) == side && path.charAt(1) == '/' ? path.substring(2) : null;
+    }
+
+    /**
+     * The path following the given prefix: a C-quoted path, or a plain path up to the optional tab-separated
+     * timestamp
+     */
+    private String getPath(final int start) {
+        if (start < lineLength && line[start] == '"') {
+            return unquote(start);
+        }
+        int end = start;
+        final int contentLength = getContentLength();
+        while (end < contentLength && line[end] != '\t') {
+            end++;
+        }
+        return new String(line, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The C-quoted string starting at the given opening quote, as git writes the paths with special characters:
+     * escaped characters, and octal escapes for the bytes of the UTF-8 encoded path. Returns <code>null</code> if the
+     * closing quote is missing.
+     */
+    private String unquote(final int start) {
+        final ByteArrayOutputStream toReturn = new ByteArrayOutputStream();
+        int position = start + 1;
+        while (position < lineLength) {
+            final byte current = line[position++];
+            if (current == '"') {
+                return new String(toReturn.toByteArray(), StandardCharsets.UTF_8);
+            }
+            if (current != '\\' || position >= lineLength) {
+                toReturn.write(current);
+                continue;
+            }
+            final byte escaped = line[position++];
+            if (escaped >= '0' && escaped <= '7') {
+                int value = escaped - '0';
+                for (int i = 0; i < 2 && position < lineLength && line[position] >= '0' && line[position] <= '7'; i++) {
+                    value = value * 8 + line[position++] - '0';
+                }
+                toReturn.write(value);
+                continue;
+            }
+            switch (escaped) {
+                case 'a':
+                    toReturn.write(7);
+                    break;
+                case 'b':
+                    toReturn.write('\b');
+                    break;
+                case 'f':
+                    toReturn.write('\f');
+                    break;
+                case 'n':
+                    toReturn.write('\n');
+                    break;
+                case 'r':
+                    toReturn.write('\r');
+                    break;
+                case 't':
+                    toReturn.write('\t');
+                    break;
+                case 'v':
+                    toReturn.write(11);
+                    break;
+                default:
+                    // '"' and '\\'
+                    toReturn.write(escaped);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The headers of a single file diff
+     */
+    private static class FileHeader {
+
+        private final boolean git;
+        private final List<LineRange> lineRanges = new ArrayList<>();
+        private String path;
+        private boolean added;
+        private boolean deleted;
+        private boolean renamed;
+        private boolean unchangedContent;
+        private boolean modeChanged;
+        private boolean binary;
+
+        private FileHeader(final String path,
+                           final boolean git) {
+            this.path = path;
+            this.git = git;
+        }
+
+        private ChangeType getChangeType() {
+            if (deleted) {
+                return ChangeType.DELETED;
+            }
+            if (binary) {
+                return ChangeType.BINARY;
+            }
+            if (renamed) {
+                return unchangedContent ? ChangeType.MOVED : ChangeType.RENAMED;
+            }
+            if (added) {
+                return ChangeType.ADDED;
+            }
+            // copies with full similarity are still new files, so only renames are moves
+            return modeChanged && lineRanges.isEmpty() ? ChangeType.MODE_ONLY : ChangeType.MODIFIED;
+        }
+    }
+
+    private int getContentLength() {
+        return lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+    }
+
+    private boolean halvesMatch(final int first,
+                                final int length,
+                                final int second) {
+        for (int i = 0; i < length; i++) {
+            if (line[first + i] != line[second + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean startsWith(final byte[] prefix) {
+        return regionMatches(0, prefix);
+    }
+
+    private boolean regionMatches(final int offset,
+                                  final byte[] region) {
+        if (offset + region.length > lineLength) {
+            return false;
+        }
+        for (int i = 0; i < region.length; i++) {
+            if (line[offset + i] != region[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the next line, without its line feed, to the line buffer
+     *
+     * @return <code>false</code> at end of input
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean found = false;
+        while (fill()) {
+            found = true;
+            final int position = buffer.position();
+            final int limit = buffer.limit();
+            int end = position;
+            while (end < limit && bytes[end] != '\n') {
+                end++;
+            }
+            appendToLine(position, end - position);
+            if (end < limit) {
+                buffer.position(end + 1);
+                return true;
+            }
+            buffer.position(limit);
+        }
+        return found;
+    }
+
+    /**
+     * Skip the next line
+     *
+     * @return the first byte of the skipped line, or <code>-1</code> at end of input
+     */
+    private int skipLine() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        final int first = bytes[buffer.position()];
+        do {
+            final int limit = buffer.limit();
+            for (int end = buffer.position(); end < limit; end++) {
+                if (bytes[end] == '\n') {
+                    buffer.position(end + 1);
+                    return first;
+                }
+            }
+            buffer.position(limit);
+        } while (fill());
+        return first;
+    }
+
+    private void appendToLine(final int offset,
+                              final int length) {
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(bytes, offset, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Make sure the buffer has remaining bytes
+     *
+     * @return <code>false</code> at end of input
+     */
+    private boolean fill() throws IOException {
+        if (buffer.hasRemaining()) {
+            return true;
+        }
+        if (endOfInput) {
+            return false;
+        }
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.Formatter;
+import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static net.cardosi.maven.codeformatter.plugin.PipelineHelper.processFile;
+import static net.cardosi.maven.codeformatter.plugin.PipelineHelper.processFiles;
+
+/**
+ * <code>FormatEngine</code> calling the formatter and impsort libraries directly, in a single in-process pass, with
+ * engines configured once and reused for every call.
+ * <p>
+ * When a time budget is set, each file is processed under a <code>FileWatchdog</code>: a file running out of time is
+ * skipped and recorded in the report, and the engines, still busy with it, are replaced by new ones.
+ */
+public class DirectFormatEngine implements FormatEngine {
+
+    /**
+     * Creates the formatters of the engine, by file extension
+     */
+    @FunctionalInterface
+    public interface FormattersFactory {
+
+        Map<String, Formatter> createFormatters() throws MojoExecutionException;
+    }
+
+    private final FormattersFactory formattersFactory;
+    private final Supplier<ImpSort> impSortFactory;
+    private final LineEnding lineEnding;
+    private final Charset encoding;
+    private final long fileTimeoutMillis;
+    private final FileWatchdog watchdog;
+    private final BuildReport report;
+    private final Log log;
+    private Map<String, Formatter> formatters;
+    private ImpSort impSort;
+
+    /**
+     * @param impSortFactory    creates the import sorter, or returns <code>null</code> if imports should not be sorted
+     * @param fileTimeoutMillis the time budget of each file, or <code>0</code> if files have no time budget
+     */
+    public DirectFormatEngine(final FormattersFactory formattersFactory,
+                              final Supplier<ImpSort> impSortFactory,
+                              final LineEnding lineEnding,
+                              final Charset encoding,
+                              final long fileTimeoutMillis,
+                              final BuildReport report,
+                              final Log log) throws MojoExecutionException {
+        this.formattersFactory = formattersFactory;
+        this.impSortFactory = impSortFactory;
+        this.lineEnding = lineEnding;
+        this.encoding = encoding;
+        this.fileTimeoutMillis = fileTimeoutMillis;
+        this.watchdog = fileTimeoutMillis > 0 ? new FileWatchdog(fileTimeoutMillis) : null;
+        this.report = report;
+        this.log = log;
+        this.formatters = formattersFactory.createFormatters();
+        this.impSort = impSortFactory.get();
+    }
+
+    @Override
+    public void format(final List<File> files,
+                       final Set<File> rangeFormattedFiles,
+                       final Set<File> importsUnaffectedFiles,
+                       final ChangeSet changeSet) throws MojoExecutionException {
+        if (watchdog == null) {
+            processFiles(files, rangeFormattedFiles, importsUnaffectedFiles, formatters, impSort, lineEnding, encoding, report, log);
+            return;
+        }
+        log.info("Processing " + files.size() + " files in-process, within " + fileTimeoutMillis + " ms each");
+        int written = 0;
+        int timedOut = 0;
+        for (File file : files) {
+            final Optional<Boolean> result = processFile(file,
+                    rangeFormattedFiles.contains(file),
+                    formatters,
+                    importsUnaffectedFiles.contains(file) ? null : impSort,
+                    lineEnding,
+                    encoding,
+                    watchdog,
+                    report,
+                    log);
+            if (!result.isPresent()) {
+                log.warn("Skipping " + file + ": not formatted within " + fileTimeoutMillis + " ms");
+                report.addSkippedFile(file, "not formatted within " + fileTimeoutMillis + " ms");
+                timedOut++;
+                final BuildReport.Timer setupTimer = report.time(BuildReport.SETUP);
+                try {
+                    formatters = formattersFactory.createFormatters();
+                    impSort = impSortFactory.get();
+                } finally {
+                    setupTimer.close();
+                }
+            } else if (result.get()) {
+                written++;
+            }
+        }
+        log.info("Written " + written + " files, skipped " + (files.size() - written - timedOut) + " unchanged files and " + timedOut + " files out of time");
+    }
+}
@@ -0,0 +1,82 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A modified file, with its kind of change and the line ranges modified inside it.
+ * <p>
+ * An empty list of line ranges means that they are not known, e.g. for newly added files, and the whole file
+ * has to be considered modified. Likewise, imports have to be sorted unless the change is known to leave them alone.
+ */
+public class FileChange {
+
+    private final File file;
+    private final List<LineRange> lineRanges;
+    private final ChangeType changeType;
+    private final ImportChange importChange;
+
+    public FileChange(final File file) {
+        this(file, Collections.emptyList());
+    }
+
+    public FileChange(final File file, final List<LineRange> lineRanges) {
+        this(file, lineRanges, ChangeType.MODIFIED);
+    }
+
+    public FileChange(final File file, final List<LineRange> lineRanges, final ChangeType changeType) {
+        this(file, lineRanges, changeType, ImportChange.UNKNOWN);
+    }
+
+    public FileChange(final File file, final List<LineRange> lineRanges, final ChangeType changeType, final ImportChange importChange) {
+        this.file = file;
+        this.lineRanges = Collections.unmodifiableList(lineRanges);
+        this.changeType = changeType;
+        this.importChange = importChange;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public List<LineRange> getLineRanges() {
+        return lineRanges;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+
+    public ImportChange getImportChange() {
+        return importChange;
+    }
+
+    public FileChange withFile(final File file) {
+        return new FileChange(file, lineRanges, changeType, importChange);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        FileChange that = (FileChange) o;
+        return file.equals(that.file) && lineRanges.equals(that.lineRanges) && changeType == that.changeType && importChange == that.importChange;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(file, lineRanges, changeType, importChange);
+    }
+
+    @Override
+    public String toString() {
+        final String toReturn = changeType == ChangeType.MODIFIED ? file.toString() : file + " (" + changeType + ")";
+        return lineRanges.isEmpty() ? toReturn : toReturn + lineRanges.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Arrays;
+
+/**
+ * Class responsible of writing back formatted files
+ */
+public class FileHelper {
+
+    private FileHelper() {
+    }
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Replace the content of the given file with <code>updated</code>, only if it differs from <code>original</code>.
+     * <p>
+     * Files whose bytes are unchanged are not touched at all, so their modification time does not move and
+     * incremental compilers do not consider them stale. Changed files are written to a sibling temporary file that
+     * is then atomically renamed over the original one, so a file is never seen half-written.
+     *
+     * @return <code>true</code> if the file has been written
+     */
+    public static boolean writeIfChanged(final File file,
+                                         final byte[] original,
+                                         final byte[] updated) throws IOException {
+        if (Arrays.equals(original, updated)) {
+            return false;
+        }
+        final Path target = file.toPath();
+        final Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "." + file.getName(), TEMP_SUFFIX);
+        try {
+            Files.write(temp, updated);
+            copyPermissions(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    /**
+     * Temporary files are created owner-only, so the permissions of the replaced file have to be restored
+     */
+    private static void copyPermissions(final Path source,
+                                        final Path target) throws IOException {
+        final PosixFileAttributeView sourceView = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        final PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (sourceView != null && targetView != null) {
+            targetView.setPermissions(sourceView.readAttributes().permissions());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.codehaus.plexus.resource.PlexusResource;
+import org.codehaus.plexus.resource.ResourceManager;
+import org.codehaus.plexus.resource.loader.FilePlexusResource;
+import org.codehaus.plexus.resource.loader.FileResourceCreationException;
+import org.codehaus.plexus.resource.loader.ResourceNotFoundException;
+import org.codehaus.plexus.resource.loader.URLPlexusResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal <code>ResourceManager</code>, used outside of Maven to read configuration files the same way the
+ * <code>formatter-maven-plugin</code> does: as absolute files, as files relative to the search paths, or as classpath
+ * resources.
+ * <p>
+ * Every lookup goes through {@link #getResource(String)}; as with the plexus <code>DefaultResourceManager</code>,
+ * resources copied to files are written relative to the output directory, if any, and the locations that cannot be
+ * resolved are returned as <code>null</code>.
+ */
+public class FileResourceManager implements ResourceManager {
+
+    private final List<File> searchPaths = new ArrayList<>();
+    private File outputDirectory;
+
+    @Override
+    public InputStream getResourceAsInputStream(final String name) throws ResourceNotFoundException {
+        try {
+            return getResource(name).getInputStream();
+        } catch (IOException e) {
+            throw new ResourceNotFoundException(name, e);
+        }
+    }
+
+    @Override
+    public File getResourceAsFile(final String name) throws ResourceNotFoundException, FileResourceCreationException {
+        return getResourceAsFile(getResource(name));
+    }
+
+    @Override
+    public File getResourceAsFile(final String name,
+                                  final String outputPath) throws ResourceNotFoundException, FileResourceCreationException {
+        if (outputPath == null) {
+            return getResourceAsFile(name);
+        }
+        final File toReturn = outputDirectory != null ? new File(outputDirectory, outputPath) : new File(outputPath);
+        createResourceAsFile(getResource(name), toReturn);
+        return toReturn;
+    }
+
+    @Override
+    public void setOutputDirectory(final File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    @Override
+    public void addSearchPath(final String type,
+                              final String path) {
+        final File searchPath = new File(path);
+        if (!searchPaths.contains(searchPath)) {
+            searchPaths.add(searchPath);
+        }
+    }
+
+    /**
+     * @deprecated as in <code>ResourceManager</code>, use {@link #getResourceAsFile(String, String)} instead
+     */
+    @Deprecated
+    @Override
+    public File resolveLocation(final String location,
+                                final String localfile) {
+        try {
+            return getResourceAsFile(location, localfile);
+        } catch (ResourceNotFoundException | FileResourceCreationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @deprecated as in <code>ResourceManager</code>, use {@link #getResourceAsFile(String)} instead
+     */
+    @Deprecated
+    @Override
+    public File resolveLocation(final String location) {
+        try {
+            return getResourceAsFile(location);
+        } catch (ResourceNotFoundException | FileResourceCreationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public PlexusResource getResource(final String name) throws ResourceNotFoundException {
+        final File file = new File(name);
+        if (file.isAbsolute() && file.isFile()) {
+            return new FilePlexusResource(file);
+        }
+        for (File searchPath : searchPaths) {
+            final File candidate = new File(searchPath, name);
+            if (candidate.isFile()) {
+                return new FilePlexusResource(candidate);
+            }
+        }
+        final URL url = FileResourceManager.class.getClassLoader().getResource(name);
+        if (url == null) {
+            throw new ResourceNotFoundException(name);
+        }
+        return new URLPlexusResource(url);
+    }
+
+    @Override
+    public File getResourceAsFile(final PlexusResource resource) throws FileResourceCreationException {
+        try {
+            final File file = resource.getFile();
+            if (file != null) {
+                return file;
+            }
+        } catch (IOException e) {
+            // not backed by a file, e.g. a resource packaged in a jar: copied below
+        }
+        final File toReturn;
+        try {
+            toReturn = File.createTempFile("plexus-resources", "tmp", outputDirectory);
+        } catch (IOException e) {
+            throw new FileResourceCreationException("Failed to create a file for " + resource.getName(), e);
+        }
+        toReturn.deleteOnExit();
+        createResourceAsFile(resource, toReturn);
+        return toReturn;
+    }
+
+    @Override
+    public void createResourceAsFile(final PlexusResource resource,
+                                     final File outputFile) throws FileResourceCreationException {
+        try {
+            final File parent = outputFile.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            try (InputStream input = resource.getInputStream()) {
+                Files.copy(input, outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new FileResourceCreationException("Failed to write " + resource.getName() + " to " + outputFile, e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Watchdog enforcing a time budget on the processing of each file.
+ * <p>
+ * Each task runs on a dedicated daemon thread, while the caller waits at most <code>timeoutMillis</code> for it. The
+ * formatters do not react to interruption, so a task running out of time is abandoned to its thread, that is not
+ * reused: the objects used by the task must not be used by the following ones either.
+ */
+public class FileWatchdog {
+
+    private final long timeoutMillis;
+    private ExecutorService executorService;
+
+    public FileWatchdog(final long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Run the given <code>task</code>, processing <code>file</code>, within the time budget
+     *
+     * @return the result of the task, or <code>Optional.empty()</code> if it ran out of time
+     */
+    public <T> Optional<T> call(final File file,
+                                final Callable<T> task) throws MojoExecutionException {
+        if (executorService == null) {
+            // the thread ends once idle, so a watchdog needs no explicit shutdown
+            executorService = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                final Thread toReturn = new Thread(runnable, "codeformatter-watchdog");
+                // an abandoned task must not prevent the JVM from exiting
+                toReturn.setDaemon(true);
+                return toReturn;
+            });
+        }
+        final Future<T> future = executorService.submit(task);
+        try {
+            return Optional.of(future.get(timeoutMillis, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            executorService.shutdownNow();
+            executorService = null;
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while processing " + file, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MojoExecutionException) {
+                throw (MojoExecutionException) e.getCause();
+            }
+            throw new MojoExecutionException("Failed to process " + file, e.getCause());
+        }
+    }
+}
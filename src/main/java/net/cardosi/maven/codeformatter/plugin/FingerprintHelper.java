@@ -0,0 +1,131 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Optional;
+
+import static net.cardosi.maven.codeformatter.plugin.HashHelper.getDigest;
+import static net.cardosi.maven.codeformatter.plugin.HashHelper.toHex;
+
+/**
+ * Class responsible of fingerprinting the working tree, to detect when nothing changed since the last successful run
+ */
+public class FingerprintHelper {
+
+    private FingerprintHelper() {
+    }
+
+    /**
+     * Compute the fingerprint of the working tree containing <code>basedir</code> from cheap inputs only, so that it
+     * can be checked before any change detection: the <code>HEAD</code> commit, the commits of the given
+     * <code>refs</code>, the stat data of the index, and the paths and stat data of the files tracked under
+     * <code>basedir</code> whose stat data differ from their index entry, combined with the given
+     * <code>inputs</code>. No file content is read and no tree is walked, so files neither tracked nor staged are not
+     * seen.
+     * Returns <code>Optional.empty()</code> if <code>basedir</code> is not inside a git repository.
+     */
+    public static Optional<String> getWorkingTreeFingerprint(final File basedir,
+                                                             final List<String> refs,
+                                                             final List<String> inputs,
+                                                             final BuildReport report,
+                                                             final Log log) throws MojoExecutionException {
+        log.info("Executing getWorkingTreeFingerprint");
+        final FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().readEnvironment().findGitDir(basedir);
+        if (repositoryBuilder.getGitDir() == null) {
+            return Optional.empty();
+        }
+        final MessageDigest digest = getDigest();
+        for (String input : inputs) {
+            update(digest, input);
+        }
+        try (Repository repository = repositoryBuilder.build();
+             BuildReport.Timer timer = report.time(BuildReport.FINGERPRINT)) {
+            final ObjectId head = repository.resolve(Constants.HEAD);
+            update(digest, head != null ? head.name() : "");
+            for (String ref : refs) {
+                final ObjectId refId = repository.resolve(ref);
+                update(digest, refId != null ? refId.name() : "");
+            }
+            final File indexFile = repository.getIndexFile();
+            update(digest, getStatData(indexFile));
+            final File workTree = repository.getWorkTree().getCanonicalFile();
+            final String modulePath = workTree.toPath().relativize(basedir.getCanonicalFile().toPath()).toString().replace(File.separatorChar, '/');
+            final DirCache dirCache = repository.readDirCache();
+            final DirCacheEntry[] entries = modulePath.isEmpty() ? getEntries(dirCache) : dirCache.getEntriesWithin(modulePath);
+            timer.getPhase().addFilesExamined(entries.length);
+            final long indexLastModified = indexFile.lastModified();
+            for (DirCacheEntry entry : entries) {
+                final File file = new File(workTree, entry.getPathString());
+                final long lastModified = file.lastModified();
+                final long length = file.length();
+                // as git does, an entry modified in the same second the index was written may hide a later change
+                if (lastModified != entry.getLastModified() || length != entry.getLength() || entry.getLastModified() / 1000 >= indexLastModified / 1000) {
+                    update(digest, entry.getPathString());
+                    update(digest, lastModified + ":" + length);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read git repository of " + basedir, e);
+        }
+        return Optional.of(toHex(digest.digest()));
+    }
+
+    /**
+     * Whether the given fingerprint is the one stored by the last successful run
+     */
+    public static boolean isUnchanged(final File fingerprintFile,
+                                      final String fingerprint) {
+        try {
+            return fingerprintFile.isFile() && new String(Files.readAllBytes(fingerprintFile.toPath()), StandardCharsets.UTF_8).equals(fingerprint);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Store the fingerprint of a successful run
+     */
+    public static void storeFingerprint(final File fingerprintFile,
+                                        final String fingerprint,
+                                        final Log log) {
+        log.debug("Storing fingerprint " + fingerprint + " to " + fingerprintFile);
+        try {
+            Files.createDirectories(fingerprintFile.getAbsoluteFile().getParentFile().toPath());
+            Files.write(fingerprintFile.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // the fast path is lost for the next run, but this run succeeded anyway
+            log.warn("Failed to store fingerprint to " + fingerprintFile + ": " + e.getMessage());
+        }
+    }
+
+    private static DirCacheEntry[] getEntries(final DirCache dirCache) {
+        final DirCacheEntry[] toReturn = new DirCacheEntry[dirCache.getEntryCount()];
+        for (int i = 0; i < toReturn.length; i++) {
+            toReturn[i] = dirCache.getEntry(i);
+        }
+        return toReturn;
+    }
+
+    private static String getStatData(final File file) {
+        return file.isFile() ? file.lastModified() + ":" + file.length() : "-";
+    }
+
+    private static void update(final MessageDigest digest,
+                               final String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+}
@@ -0,0 +1,29 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Formats files and sorts their imports.
+ * <p>
+ * Engines are not thread-safe: concurrent batches must use distinct instances.
+ *
+ * @see DirectFormatEngine
+ * @see MojoFormatEngine
+ */
+public interface FormatEngine {
+
+    /**
+     * Format the given absolute files and sort their imports.
+     *
+     * @param rangeFormattedFiles    the files already formatted by line ranges, whose imports only have to be sorted
+     * @param importsUnaffectedFiles the files whose imports do not have to be sorted, as their modifications can not
+     *                               change the result
+     * @param changeSet              the modified files the given ones belong to
+     */
+    void format(final List<File> files,
+                final Set<File> rangeFormattedFiles,
+                final Set<File> importsUnaffectedFiles,
+                final ChangeSet changeSet) throws Exception;
+}
@@ -1,7 +1,11 @@
 
 package net.cardosi.maven.codeformatter.plugin;
 
+import net.revelc.code.formatter.ConfigurationSource;
+import net.revelc.code.formatter.Formatter;
 import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.*;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
@@ -10,22 +14,45 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.configuration.PlexusConfiguration;
+import org.codehaus.plexus.component.configurator.expression.ExpressionEvaluationException;
 import org.codehaus.plexus.configuration.xml.XmlPlexusConfiguration;
 import org.codehaus.plexus.resource.ResourceManager;
 import org.twdata.maven.mojoexecutor.MojoExecutor;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static net.cardosi.maven.codeformatter.plugin.ConfigurationHelper.*;
-import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.formatFiles;
-import static net.cardosi.maven.codeformatter.plugin.ImpsortHelper.fixImports;
-import static net.cardosi.maven.codeformatter.plugin.SCMHelper.getModifiedFiles;
+import static net.cardosi.maven.codeformatter.plugin.FingerprintHelper.*;
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.*;
+import static net.cardosi.maven.codeformatter.plugin.ImpsortHelper.getImpSort;
+import static net.cardosi.maven.codeformatter.plugin.ParallelHelper.formatBatches;
+import static net.cardosi.maven.codeformatter.plugin.ParallelHelper.getBatches;
+import static net.cardosi.maven.codeformatter.plugin.ParallelHelper.getFixedSizeBatches;
+import static net.cardosi.maven.codeformatter.plugin.ParallelHelper.streamBatches;
+import static net.cardosi.maven.codeformatter.plugin.RangeFormatterHelper.*;
+import static net.cardosi.maven.codeformatter.plugin.ReactorHelper.*;
+import static net.cardosi.maven.codeformatter.plugin.StagedHelper.formatStagedFiles;
 
 @Mojo(name = "format", defaultPhase = LifecyclePhase.PROCESS_SOURCES, requiresProject = true, threadSafe = true)
-public class FormatMojo extends AbstractMojo {
+public class FormatMojo extends AbstractMojo implements ConfigurationSource {
+
+    /**
+     * Parameters of this plugin, besides the delegate plugins ones, that affect the formatted content
+     */
+    private static final List<String> FINGERPRINT_PARAMETERS = Arrays.asList("inProcess",
+            "modifiedLinesOnly",
+            "modifiedLinesContext",
+            "sortAffectedImportsOnly",
+            "formatterPluginVersion",
+            "impsortPluginVersion");
 
     // Formatter-plugin properties
 
@@ -376,6 +403,182 @@ public class FormatMojo extends AbstractMojo {
     @Parameter(defaultValue = "AUTO", property = "lineending", required = true)
     private LineEnding lineEnding;
 
+    // Change detection
+
+    /**
+     * Sets the strategy used to retrieve the locally modified files. Valid values are:
+     * <ul>
+     * <li><b>"GIT"</b> - Read the git index and object store in-process, without forking any process</li>
+     * <li><b>"BRANCH"</b> - Read in-process the differences between <code>HEAD</code> and its merge-base with
+     * <code>targetBranch</code></li>
+     * <li><b>"STAGED"</b> - Format only the files staged in the git index and stage them again; files with unstaged
+     * changes too are formatted in the index only, leaving the working tree untouched. The staged files of the whole
+     * reactor are processed once, by the first module executing the goal</li>
+     * <li><b>"WORKTREE"</b> - Scan the source directories for the files, tracked or not, whose size or modification
+     * time changed since the last successful run, as stored in <code>cachedir</code></li>
+     * <li><b>"SCM"</b> - Invoke the <code>maven-scm-plugin</code> <code>diff</code> goal</li>
+     * </ul>
+     * When <b>"GIT"</b> or <b>"BRANCH"</b> is selected but the project is not inside a git repository, <b>"SCM"</b>
+     * is used instead.
+     */
+    @Parameter(defaultValue = "GIT", property = "changeDetection", required = true)
+    private ChangeDetection changeDetection;
+
+    /**
+     * The branch whose merge-base with <code>HEAD</code> is compared with <code>HEAD</code>, when
+     * <code>changeDetection</code> is <b>"BRANCH"</b>; any git revision is accepted.
+     * The merge-base is cached in <code>cachedir</code>, and computed again only when one of the two commits moves.
+     */
+    @Parameter(defaultValue = "origin/main", property = "targetBranch")
+    private String targetBranch;
+
+    // Reactor
+
+    /**
+     * Whether the whole reactor should be formatted in a single pass.
+     * <p>
+     * When enabled, the modified files are computed once per build, split by owning module, and formatted all
+     * together by the first module executing the goal; the other modules wait for it to complete, also under
+     * <code>mvn -T</code>, then skip execution. The <code>directories</code> parameter is then replaced by the source
+     * directories of the modules owning modified files.
+     */
+    @Parameter(defaultValue = "false", property = "aggregate")
+    private boolean aggregate;
+
+    // Parallel execution
+
+    /**
+     * Whether the modified files should be split in batches, balanced by file size, and formatted concurrently.
+     */
+    @Parameter(defaultValue = "false", property = "parallel")
+    private boolean parallel;
+
+    /**
+     * The number of batches formatted concurrently when <code>parallel</code> is enabled.
+     * Default to the number of available processors.
+     */
+    @Parameter(property = "threads")
+    private int threads;
+
+    /**
+     * The maximum number of files formatted together. Larger change sets are streamed through the formatters in
+     * consecutive batches of at most <code>batchSize</code> files, each one handed to the first free worker, so memory
+     * usage does not grow with the number of modified files. Set to <code>0</code> to format all files together.
+     */
+    @Parameter(defaultValue = "2000", property = "batchSize")
+    private int batchSize;
+
+    // Line ranges formatting
+
+    /**
+     * Whether only the modified line ranges of java files should be formatted, instead of the whole files.
+     * <p>
+     * Modified line ranges, widened by <code>modifiedLinesContext</code> lines, are formatted in-process with the
+     * eclipse formatter configured by <code>configFile</code>; other files are still fully formatted by the
+     * <code>formatter-maven-plugin</code>.
+     */
+    @Parameter(defaultValue = "false", property = "modifiedLinesOnly")
+    private boolean modifiedLinesOnly;
+
+    /**
+     * The number of lines formatted before and after each modified line range, when <code>modifiedLinesOnly</code>
+     * is enabled.
+     */
+    @Parameter(defaultValue = "2", property = "modifiedLinesContext")
+    private int modifiedLinesContext;
+
+    /**
+     * Whether imports should be sorted only in the java files whose modifications may change the result: the ones
+     * whose package and import block is modified or, when <code>removeUnused</code> is enabled, whose modified lines
+     * add or remove usages of imported names.
+     * <p>
+     * Modifications are analyzed by the <b>"GIT"</b> and <b>"BRANCH"</b> change detections; imports of the files
+     * detected otherwise, and of new files, are always sorted.
+     */
+    @Parameter(defaultValue = "false", property = "sortAffectedImportsOnly")
+    private boolean sortAffectedImportsOnly;
+
+    // Pipeline
+
+    /**
+     * Whether the modified files should be formatted and impsorted in-process, in a single pass that reads and
+     * writes each file once, instead of invoking the <code>formatter-maven-plugin</code> and the
+     * <code>impsort-maven-plugin</code> one after the other.
+     * <p>
+     * The in-process pipeline uses the formatter and impsort versions this plugin is built with, so
+     * <code>formatterPluginVersion</code> and <code>impsortPluginVersion</code> are honored only when it is disabled.
+     */
+    @Parameter(defaultValue = "true", property = "inProcess")
+    private boolean inProcess;
+
+    // Guards
+
+    /**
+     * The size, in bytes, above which a modified file is skipped instead of being formatted, e.g. to leave huge
+     * generated sources alone. Set to <code>0</code> to format files of any size.
+     */
+    @Parameter(defaultValue = "0", property = "maxFileSize")
+    private long maxFileSize;
+
+    /**
+     * The time, in milliseconds, each file may take to be formatted and impsorted in-process; a file running out of
+     * time is skipped, and the other ones keep being processed. Set to <code>0</code> to give files unlimited time.
+     * Ignored, with a warning, when <code>inProcess</code> is disabled: the delegate plugins process whole batches,
+     * that cannot be timed per file.
+     */
+    @Parameter(defaultValue = "0", property = "fileTimeout")
+    private long fileTimeout;
+
+    // Result cache
+
+    /**
+     * Whether a persistent cache of the already formatted files should be used.
+     * <p>
+     * A file whose content has already been formatted and impsorted with the same parameters, configuration files
+     * and plugin versions is skipped by both tools. Any change of those invalidates the cached entries.
+     * <p>
+     * Each goal keeps its own entries, and <code>format</code> ignores the cache when <code>modifiedLinesOnly</code>
+     * or <code>sortAffectedImportsOnly</code> is set, since it then leaves parts of the files untouched.
+     */
+    @Parameter(defaultValue = "true", property = "resultCache")
+    private boolean resultCache;
+
+    /**
+     * The maximum number of entries kept in the result cache; least recently used entries are evicted first.
+     */
+    @Parameter(defaultValue = "10000", property = "resultCacheSize")
+    private int resultCacheSize;
+
+    /**
+     * The location of a cache store shared by several machines, e.g. CI agents, looked up for the files missing from
+     * the result cache: an <code>http://</code> or <code>https://</code> url, or the path of a shared directory.
+     * A file whose content has been formatted by any build sharing the store is then skipped.
+     */
+    @Parameter(property = "cacheStore")
+    private String cacheStore;
+
+    /**
+     * Whether the cache store should only be looked up, without storing the files formatted by this build.
+     */
+    @Parameter(defaultValue = "false", property = "cacheStoreReadOnly")
+    private boolean cacheStoreReadOnly;
+
+    /**
+     * The milliseconds to wait for connecting to an http cache store, and for each of its answers; when the store
+     * fails, its pending requests are dropped, it is ignored and the files are formatted locally.
+     */
+    @Parameter(defaultValue = "2000", property = "cacheStoreTimeout")
+    private int cacheStoreTimeout;
+
+    // Build report
+
+    /**
+     * Whether the timings and counters of each phase should be written as a JSON report, to
+     * <code>codeformatter-report.json</code> in the project build directory. A one-line summary is logged anyway.
+     */
+    @Parameter(defaultValue = "true", property = "buildReport")
+    private boolean buildReport;
+
     // Plugin versions
 
     /**
@@ -414,6 +617,24 @@ public class FormatMojo extends AbstractMojo {
     @Parameter(defaultValue = "${mojoExecution}")
     protected MojoExecution mojoExecution;
 
+    private BuildReport report;
+
+    /**
+     * The in-process engines not used by any batch, reused by the following ones instead of being configured again
+     */
+    private final Queue<FormatEngine> directFormatEngines = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The scanner of the <b>"WORKTREE"</b> change detection, whose snapshot is stored once files are processed
+     */
+    private WorktreeScanner worktreeScanner;
+
+    /**
+     * Completed once this execution has processed the reactor, when it claimed the <code>aggregate</code> execution;
+     * the other modules wait for it
+     */
+    private CompletableFuture<Void> aggregateExecution;
+
     /**
      * Execute.
      *
@@ -424,40 +645,687 @@ public class FormatMojo extends AbstractMojo {
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         getLog().info("Begin execution....");
-        final List<File> files = getModifiedFiles(mavenProject,
-                mavenSession,
-                pluginManager,
-                scmPluginVersion,
-                getLog());
+        report = new BuildReport(mavenProject.getArtifactId());
+        try {
+            processChangedFiles();
+        } catch (MojoExecutionException | MojoFailureException | RuntimeException | Error e) {
+            if (aggregateExecution != null) {
+                aggregateExecution.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            if (aggregateExecution != null) {
+                aggregateExecution.complete(null);
+            }
+            if (buildReport) {
+                report.write(new File(targetDirectory, "codeformatter-report.json"), getLog());
+            }
+            getLog().info(report.getSummary());
+        }
+    }
+
+    /**
+     * Format the modified files; overridden by goals that process them differently
+     */
+    protected void processChangedFiles() throws MojoExecutionException, MojoFailureException {
+        if (changeDetection == ChangeDetection.STAGED) {
+            // the git index is locked while updated, so a single module stages the files of the whole reactor
+            final CompletableFuture<Void> execution = new CompletableFuture<>();
+            if (!claimAggregateExecution(mavenSession, mojoExecution.getGoal() + "." + changeDetection, execution, getLog())) {
+                getLog().info("Staged files already processed for the reactor");
+                return;
+            }
+            aggregateExecution = execution;
+            final Map<String, Formatter> formatters = createFormatters();
+            final ImpSort impSort = createImpSort();
+            try (BuildReport.Timer timer = report.time(BuildReport.STAGED)) {
+                timer.getPhase().addFilesChanged(formatStagedFiles(getReactorBasedir(),
+                        directories != null && directories.length > 0 ? Arrays.asList(directories) : getSourceDirectories(mavenSession.getProjects()),
+                        excludes,
+                        formatters,
+                        impSort,
+                        lineEnding,
+                        getEncoding(),
+                        report,
+                        getLog()));
+            }
+            return;
+        }
+        if (!inProcess && fileTimeout > 0) {
+            getLog().warn("Ignoring fileTimeout: the delegate plugins cannot be timed per file, set inProcess to true");
+        }
+        // checked before any change detection, configuration evaluation or formatter setup
+        final File fingerprintFile = new File(targetDirectory, "codeformatter-fingerprint");
+        final Optional<String> fingerprint = getWorkingTreeFingerprint();
+        if (fingerprint.isPresent() && isUnchanged(fingerprintFile, fingerprint.get())) {
+            getLog().info("Nothing changed since last successful run");
+            return;
+        }
+        final Optional<ChangeSet> optionalChangeSet = getChangeSet();
+        if (!optionalChangeSet.isPresent()) {
+            fingerprint.ifPresent(value -> storeFingerprint(fingerprintFile, value, getLog()));
+            saveWorktreeSnapshot(Collections.emptyList(), Collections.emptyList());
+            return;
+        }
+        final ChangeSet changeSet = optionalChangeSet.get();
         try {
-            final PlexusConfiguration pomConfiguration = new XmlPlexusConfiguration(mojoExecution.getConfiguration());
-            final PluginParameterExpressionEvaluator expressionEvaluator = new PluginParameterExpressionEvaluator(mavenSession, mojoExecution);
-            final MojoExecutor.Element includes = getIncludesElement(files, getLog());
-            final MojoExecutor.Element[] formatterConfigurationElements = getFormatterConfigurationElements(includes,
-                    pomConfiguration,
-                    expressionEvaluator,
+            final ConfigurationSnapshot configurationSnapshot;
+            final byte[] configurationFingerprint;
+            final BuildReport.Timer configurationTimer = report.time(BuildReport.CONFIGURATION);
+            try {
+                configurationSnapshot = compileConfiguration();
+                configurationFingerprint = getConfigurationFingerprint(configurationSnapshot);
+            } finally {
+                configurationTimer.close();
+            }
+            final ResultCache cache;
+            final BuildReport.Timer resultCacheTimer = report.time(BuildReport.RESULT_CACHE);
+            try {
+                // partially formatted files are not fully formatted: recording them would let later runs skip them
+                cache = resultCache && !isWithLineRanges() ? getResultCache(configurationFingerprint) : null;
+            } finally {
+                resultCacheTimer.close();
+            }
+            final ChangeSet toFormat = cache != null ? getUncachedChangeSet(changeSet, cache) : changeSet;
+            if (toFormat.isEmpty()) {
+                getLog().info("All modified files already formatted");
+            } else {
+                format(toFormat, configurationSnapshot);
+            }
+            final Set<File> skippedFiles = report.getSkippedFiles();
+            if (cache != null) {
+                final List<File> formatted = new ArrayList<>(toFormat.getFiles());
+                formatted.removeAll(skippedFiles);
+                // also saves the entries found in the cache store
+                updateResultCache(toFormat.retain(formatted), cache);
+            }
+            // formatted files have new stat data, so the fingerprint is computed again; skipped files would not be
+            // retried, e.g. with a larger time budget, if the fingerprint was stored
+            final Optional<String> updatedFingerprint = fingerprint.isPresent() ? getWorkingTreeFingerprint() : Optional.empty();
+            if (updatedFingerprint.isPresent() && skippedFiles.isEmpty()) {
+                storeFingerprint(fingerprintFile, updatedFingerprint.get(), getLog());
+            }
+            saveWorktreeSnapshot(changeSet.getFiles(), Collections.emptyList());
+        } catch (Exception e) {
+            getLog().error(e);
+            throw new MojoFailureException(e.getMessage());
+        }
+        getLog().info("....done!");
+    }
+
+    /**
+     * Retrieve the modified files to process, of the current module or, when <code>aggregate</code> is enabled, of
+     * the whole reactor; empty when there is nothing to process
+     */
+    protected Optional<ChangeSet> getChangeSet() throws MojoExecutionException {
+        final List<FileChange> changedFiles;
+        final List<File> fileDirectories;
+        if (aggregate) {
+            final CompletableFuture<Void> execution = new CompletableFuture<>();
+            if (!claimAggregateExecution(mavenSession, mojoExecution.getGoal(), execution, getLog())) {
+                getLog().info("Reactor already processed by the aggregate execution");
+                return Optional.empty();
+            }
+            aggregateExecution = execution;
+            final Map<MavenProject, List<FileChange>> modifiedFilesByModule = getModifiedFilesByModule(mavenSession.getProjects(),
+                    getReactorChangedFiles(),
                     getLog());
-            formatFiles(mavenProject,
+            if (modifiedFilesByModule.isEmpty()) {
+                getLog().info("No modified files in reactor");
+                return Optional.empty();
+            }
+            changedFiles = new ArrayList<>();
+            modifiedFilesByModule.forEach((project, files) -> {
+                report.addModule(project.getArtifactId(), files.size());
+                changedFiles.addAll(files);
+            });
+            fileDirectories = getSourceDirectories(modifiedFilesByModule.keySet());
+        } else {
+            changedFiles = getChangedFiles();
+            fileDirectories = getFileDirectories();
+        }
+        final ChangeSet changeSet;
+        try (BuildReport.Timer timer = report.time(BuildReport.RESOLUTION)) {
+            timer.getPhase().addFilesExamined(changedFiles.size());
+            changeSet = skipOversizedFiles(ChangeSet.of(changedFiles, fileDirectories, excludes, getLog()));
+        }
+        if (changeSet.isEmpty()) {
+            getLog().info("No modified files");
+            return Optional.empty();
+        }
+        return Optional.of(changeSet);
+    }
+
+    private void format(final ChangeSet changeSet,
+                        final ConfigurationSnapshot configurationSnapshot) throws Exception {
+        final List<File> files = changeSet.getFiles();
+        final Set<File> rangeFormattedFiles;
+        final BuildReport.Timer lineRangesTimer = report.time(BuildReport.LINE_RANGES);
+        try {
+            rangeFormattedFiles = modifiedLinesOnly ? formatModifiedLines(changeSet.getFileChanges()) : Collections.emptySet();
+        } finally {
+            lineRangesTimer.close();
+        }
+        final Set<File> importsUnaffectedFiles = sortAffectedImportsOnly && !skip ? getImportsUnaffectedFiles(changeSet.getFileChanges()) : Collections.emptySet();
+        if (batchSize > 0 && files.size() > batchSize) {
+            final List<List<File>> batches = getFixedSizeBatches(files, batchSize);
+            if (parallel) {
+                streamBatches(batches,
+                        getWorkers(),
+                        (batch, workerIndex) -> {
+                            // each worker keeps its own formatter cache, to avoid concurrent writes of the same file
+                            final Map<String, MojoExecutor.Element> batchOverrides = new HashMap<>();
+                            batchOverrides.put(CACHEDIR, getCachedirElement(new File(cachedir, "codeformatter-batch-" + workerIndex), getLog()));
+                            formatBatch(batch, rangeFormattedFiles, importsUnaffectedFiles, changeSet, batchOverrides, configurationSnapshot);
+                        },
+                        mavenProject,
+                        mavenSession,
+                        getLog());
+            } else {
+                for (List<File> batch : batches) {
+                    formatBatch(batch, rangeFormattedFiles, importsUnaffectedFiles, changeSet, new HashMap<>(), configurationSnapshot);
+                }
+            }
+        } else if (parallel) {
+            final int workers = getWorkers();
+            formatBatches(getBatches(files, workers, getLog()),
+                    workers,
+                    (batch, batchIndex) -> {
+                        // each batch keeps its own formatter cache, to avoid concurrent writes of the same file
+                        final Map<String, MojoExecutor.Element> batchOverrides = new HashMap<>();
+                        batchOverrides.put(CACHEDIR, getCachedirElement(new File(cachedir, "codeformatter-batch-" + batchIndex), getLog()));
+                        formatBatch(batch, rangeFormattedFiles, importsUnaffectedFiles, changeSet, batchOverrides, configurationSnapshot);
+                    },
+                    mavenProject,
                     mavenSession,
-                    pluginManager,
-                    formatterConfigurationElements,
-                    formatterPluginVersion,
-                    getLog());
-            final MojoExecutor.Element[] impsortConfigurationElements = getImpsortConfigurationElements(includes,
-                    pomConfiguration,
-                    expressionEvaluator,
                     getLog());
-            fixImports(mavenProject,
+        } else {
+            formatBatch(files, rangeFormattedFiles, importsUnaffectedFiles, changeSet, new HashMap<>(), configurationSnapshot);
+        }
+    }
+
+    /**
+     * Format the given absolute files with a <code>FormatEngine</code>: a pooled direct engine in-process, or a new
+     * delegate plugins engine otherwise.
+     */
+    private void formatBatch(final List<File> files,
+                             final Set<File> rangeFormattedFiles,
+                             final Set<File> importsUnaffectedFiles,
+                             final ChangeSet changeSet,
+                             final Map<String, MojoExecutor.Element> overrides,
+                             final ConfigurationSnapshot configurationSnapshot) throws Exception {
+        if (!inProcess) {
+            new MojoFormatEngine(configurationSnapshot,
+                    overrides,
+                    mavenProject,
                     mavenSession,
                     pluginManager,
-                    impsortConfigurationElements,
+                    formatterPluginVersion,
                     impsortPluginVersion,
+                    report,
+                    getLog()).format(files, rangeFormattedFiles, importsUnaffectedFiles, changeSet);
+            return;
+        }
+        // engines are not thread-safe, so each one is used by a single batch at a time and then returned to the pool
+        FormatEngine formatEngine = directFormatEngines.poll();
+        if (formatEngine == null) {
+            final BuildReport.Timer setupTimer = report.time(BuildReport.SETUP);
+            try {
+                formatEngine = new DirectFormatEngine(this::createFormatters, this::createImpSort, lineEnding, getEncoding(), fileTimeout, report, getLog());
+            } finally {
+                setupTimer.close();
+            }
+        }
+        try {
+            formatEngine.format(files, rangeFormattedFiles, importsUnaffectedFiles, changeSet);
+        } finally {
+            directFormatEngines.add(formatEngine);
+        }
+    }
+
+    /**
+     * Create the in-process formatters, by file extension
+     */
+    protected Map<String, Formatter> createFormatters() throws MojoExecutionException {
+        return getFormatters(resourceManager,
+                basedir,
+                getConfigFiles(),
+                useEclipseDefaults,
+                javaExclusionPattern,
+                lineEnding,
+                this,
+                getLog());
+    }
+
+    /**
+     * Create the in-process import sorter, or return <code>null</code> if imports should not be sorted
+     */
+    protected ImpSort createImpSort() {
+        return skip ? null : getImpSort(Charset.forName(sourceEncoding),
+                groups,
+                staticGroups,
+                staticAfter,
+                joinStaticWithNonStatic,
+                breadthFirstComparator,
+                removeUnused,
+                treatSamePackageAsUnused,
+                lineEnding,
+                compliance,
+                getLog());
+    }
+
+    /**
+     * The directories of the current module whose files are formatted
+     */
+    protected List<File> getFileDirectories() {
+        return directories != null && directories.length > 0 ? Arrays.asList(directories) : Arrays.asList(sourceDirectory, testSourceDirectory);
+    }
+
+    protected String[] getExcludes() {
+        return excludes;
+    }
+
+    protected LineEnding getLineEnding() {
+        return lineEnding;
+    }
+
+    protected MavenProject getMavenProject() {
+        return mavenProject;
+    }
+
+    protected MavenSession getMavenSession() {
+        return mavenSession;
+    }
+
+    protected BuildReport getReport() {
+        return report;
+    }
+
+    /**
+     * The number of concurrent workers: <code>threads</code>, or the number of available processors if not set
+     */
+    protected int getWorkers() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Retrieve the configuration file of each file extension to format
+     */
+    private Map<String, String> getConfigFiles() {
+        final Map<String, String> toReturn = new HashMap<>();
+        if (skipFormatting) {
+            return toReturn;
+        }
+        if (!skipJavaFormatting) {
+            toReturn.put(JAVA_EXTENSION, configFile);
+        }
+        if (!skipJsFormatting) {
+            toReturn.put(JS_EXTENSION, configJsFile);
+        }
+        if (!skipHtmlFormatting) {
+            toReturn.put(HTML_EXTENSION, configHtmlFile);
+        }
+        if (!skipXmlFormatting) {
+            toReturn.put(XML_EXTENSION, configXmlFile);
+        }
+        if (!skipJsonFormatting) {
+            toReturn.put(JSON_EXTENSION, configJsonFile);
+        }
+        if (!skipCssFormatting) {
+            toReturn.put(CSS_EXTENSION, configCssFile);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Retrieve the files whose modifications are known to leave the result of sorting their imports unchanged
+     */
+    private Set<File> getImportsUnaffectedFiles(final List<FileChange> fileChanges) {
+        final Set<File> toReturn = new HashSet<>();
+        for (FileChange fileChange : fileChanges) {
+            if (!fileChange.getImportChange().requiresImportSorting(removeUnused)) {
+                toReturn.add(fileChange.getFile());
+            }
+        }
+        getLog().info("Skipping import sorting of " + toReturn.size() + " files whose imports are unaffected");
+        return toReturn;
+    }
+
+    /**
+     * Format in-process the modified line ranges of java files.
+     *
+     * @return the files that have been formatted, and that the formatter has to skip
+     */
+    private Set<File> formatModifiedLines(final List<FileChange> fileChanges) throws MojoExecutionException {
+        if (skipFormatting || skipJavaFormatting) {
+            return Collections.emptySet();
+        }
+        final Set<File> toReturn = new HashSet<>();
+        final List<FileChange> rangeFileChanges = new ArrayList<>();
+        for (FileChange fileChange : fileChanges) {
+            if (isRangeFormattable(fileChange)) {
+                toReturn.add(fileChange.getFile());
+                rangeFileChanges.add(fileChange);
+            }
+        }
+        if (!rangeFileChanges.isEmpty()) {
+            final Map<String, String> options = getFormattingOptions(resourceManager,
+                    basedir,
+                    configFile,
+                    useEclipseDefaults,
+                    compilerSource,
+                    compilerCompliance,
+                    compilerTargetPlatform,
+                    getLog());
+            formatLineRanges(rangeFileChanges,
+                    options,
+                    lineEnding,
+                    getEncoding(),
+                    javaExclusionPattern,
+                    modifiedLinesContext,
+                    report,
                     getLog());
+        }
+        return toReturn;
+    }
+
+    /**
+     * Compute the fingerprint of the effective configuration, including configuration files and plugin versions
+     */
+    private byte[] getConfigurationFingerprint(final ConfigurationSnapshot configurationSnapshot) throws Exception {
+        final SortedMap<String, String> configuration = getEvaluatedConfiguration(configurationSnapshot, FINGERPRINT_PARAMETERS, getLog());
+        configuration.put("pluginVersion", plugin.getVersion());
+        // the goals do not process files the same way, so none of them trusts the entries of another
+        configuration.put("goal", mojoExecution.getGoal());
+        return ResultCache.getFingerprint(configuration,
+                Arrays.asList(configFile, configJsFile, configHtmlFile, configXmlFile, configJsonFile, configCssFile),
+                resourceManager,
+                basedir,
+                getLog());
+    }
+
+    private ResultCache getResultCache(final byte[] configurationFingerprint) throws MojoExecutionException {
+        return ResultCache.load(new File(cachedir, "codeformatter-" + mojoExecution.getGoal() + "-result-cache.bin"),
+                configurationFingerprint,
+                resultCacheSize,
+                getCacheStore(),
+                cacheStoreReadOnly,
+                getLog());
+    }
+
+    /**
+     * Load the result cache of the current configuration, or return <code>null</code> if <code>resultCache</code> is
+     * disabled
+     */
+    protected ResultCache loadResultCache() throws MojoExecutionException {
+        if (!resultCache) {
+            return null;
+        }
+        final byte[] configurationFingerprint;
+        final BuildReport.Timer configurationTimer = report.time(BuildReport.CONFIGURATION);
+        try {
+            configurationFingerprint = getConfigurationFingerprint(compileConfiguration());
+        } catch (MojoExecutionException e) {
+            throw e;
         } catch (Exception e) {
-            getLog().error(e);
-            throw new MojoFailureException(e.getMessage());
+            throw new MojoExecutionException("Failed to evaluate configuration", e);
+        } finally {
+            configurationTimer.close();
         }
-        getLog().info("....done!");
+        final BuildReport.Timer resultCacheTimer = report.time(BuildReport.RESULT_CACHE);
+        try {
+            return getResultCache(configurationFingerprint);
+        } finally {
+            resultCacheTimer.close();
+        }
+    }
+
+    private ConfigurationSnapshot compileConfiguration() throws ExpressionEvaluationException {
+        return getConfigurationSnapshot(new XmlPlexusConfiguration(mojoExecution.getConfiguration()),
+                FINGERPRINT_PARAMETERS,
+                new PluginParameterExpressionEvaluator(mavenSession, mojoExecution),
+                mavenSession,
+                mavenProject,
+                getLog());
+    }
+
+    private CacheStore getCacheStore() throws MojoExecutionException {
+        if (cacheStore == null || cacheStore.trim().isEmpty()) {
+            return null;
+        }
+        if (cacheStore.startsWith("http://") || cacheStore.startsWith("https://")) {
+            try {
+                return new HttpCacheStore(new URL(cacheStore), cacheStoreTimeout);
+            } catch (MalformedURLException e) {
+                throw new MojoExecutionException("Invalid cache store url " + cacheStore, e);
+            }
+        }
+        return new LocalCacheStore(new File(cacheStore));
+    }
+
+    private File getWorkingTreeBasedir() {
+        return aggregate ? getReactorBasedir() : mavenProject.getBasedir();
+    }
+
+    private File getReactorBasedir() {
+        return mavenSession.getTopLevelProject() != null ? mavenSession.getTopLevelProject().getBasedir() : mavenProject.getBasedir();
+    }
+
+    /**
+     * Compute the fingerprint of the working tree and of the raw configuration, i.e. the parameters as written, the
+     * project and user properties they may refer to, the plugin and its dependencies, and the stat data of the
+     * configuration files. Returns <code>Optional.empty()</code> with the <b>"WORKTREE"</b> change detection, that
+     * also processes untracked files, or outside git repositories.
+     */
+    private Optional<String> getWorkingTreeFingerprint() throws MojoExecutionException {
+        if (changeDetection == ChangeDetection.WORKTREE) {
+            return Optional.empty();
+        }
+        final List<String> inputs = new ArrayList<>();
+        inputs.add(changeDetection + ":" + targetBranch + ":" + aggregate);
+        inputs.add(String.valueOf(mojoExecution.getConfiguration()));
+        inputs.add(new TreeMap<>(mavenProject.getProperties()).toString());
+        inputs.add(new TreeMap<>(mavenSession.getUserProperties()).toString());
+        inputs.add(basedir.getAbsolutePath());
+        inputs.add(plugin.getId());
+        for (Artifact artifact : plugin.getArtifacts()) {
+            inputs.add(artifact.getId());
+        }
+        for (String configurationFile : Arrays.asList(configFile, configJsFile, configHtmlFile, configXmlFile, configJsonFile, configCssFile)) {
+            inputs.add(getConfigurationFileStamp(configurationFile));
+        }
+        final List<String> refs = changeDetection == ChangeDetection.BRANCH ? Collections.singletonList(targetBranch) : Collections.emptyList();
+        return FingerprintHelper.getWorkingTreeFingerprint(getWorkingTreeBasedir(), refs, inputs, report, getLog());
+    }
+
+    /**
+     * The stat data of the given configuration file location, if it is a file; classpath resources are covered by
+     * the plugin dependencies
+     */
+    private String getConfigurationFileStamp(final String location) {
+        if (location == null) {
+            return "-";
+        }
+        final File file = new File(location).isAbsolute() ? new File(location) : new File(basedir, location);
+        return file.isFile() ? file.getAbsolutePath() + ":" + file.lastModified() + ":" + file.length() : location;
+    }
+
+    /**
+     * Retrieve the modified files whose current content is not in the result cache
+     */
+    protected ChangeSet getUncachedChangeSet(final ChangeSet changeSet,
+                                             final ResultCache cache) throws IOException {
+        final List<File> toReturn = new ArrayList<>();
+        try (BuildReport.Timer timer = report.time(BuildReport.RESULT_CACHE)) {
+            final Set<File> formattedFiles = cache.getFormattedFiles(changeSet.getFiles(), getLog());
+            for (File file : changeSet.getFiles()) {
+                timer.getPhase().addFilesExamined(1);
+                timer.getPhase().addBytesRead(file.length());
+                if (formattedFiles.contains(file)) {
+                    getLog().debug("Skipping cached " + file);
+                } else {
+                    toReturn.add(file);
+                }
+            }
+        }
+        getLog().info("Skipping " + (changeSet.getFiles().size() - toReturn.size()) + " cached files");
+        return changeSet.retain(toReturn);
+    }
+
+    /**
+     * Record the formatted content of the given files in the result cache, and save it
+     */
+    protected void updateResultCache(final ChangeSet changeSet,
+                                     final ResultCache cache) throws IOException, MojoExecutionException {
+        final BuildReport.Timer resultCacheTimer = report.time(BuildReport.RESULT_CACHE);
+        try {
+            for (File file : changeSet.getFiles()) {
+                cache.setFormatted(file);
+            }
+            cache.save(getLog());
+        } finally {
+            resultCacheTimer.close();
+        }
+    }
+
+    /**
+     * Store the stat data of the last working tree scan, if any, once the changed files have been processed
+     *
+     * @param processed the files processed, whose stat data are read again
+     * @param failed    the files to report again at the following scan
+     */
+    protected void saveWorktreeSnapshot(final Collection<File> processed,
+                                        final Collection<File> failed) {
+        if (worktreeScanner != null) {
+            // skipped files are reported again, e.g. to be formatted once the guards are relaxed
+            final Set<File> toForget = new HashSet<>(failed);
+            toForget.addAll(report.getSkippedFiles());
+            worktreeScanner.save(processed, toForget, getLog());
+        }
+    }
+
+    /**
+     * Remove from the given change set the files larger than <code>maxFileSize</code>, recording them as skipped
+     */
+    private ChangeSet skipOversizedFiles(final ChangeSet changeSet) {
+        if (maxFileSize <= 0) {
+            return changeSet;
+        }
+        final List<File> toRetain = new ArrayList<>();
+        for (File file : changeSet.getFiles()) {
+            final long size = file.length();
+            if (size > maxFileSize) {
+                getLog().warn("Skipping " + file + ": " + size + " bytes, more than " + maxFileSize);
+                report.addSkippedFile(file, size + " bytes, more than " + maxFileSize);
+            } else {
+                toRetain.add(file);
+            }
+        }
+        return toRetain.size() == changeSet.getFiles().size() ? changeSet : changeSet.retain(toRetain);
+    }
+
+    private List<FileChange> getChangedFiles() throws MojoExecutionException {
+        if (changeDetection == ChangeDetection.WORKTREE) {
+            return scanWorktree(getFileDirectories());
+        }
+        final MavenProject topLevelProject = mavenSession.getTopLevelProject();
+        if (topLevelProject != null && isWithin(topLevelProject.getBasedir(), mavenProject.getBasedir())) {
+            // detect once for the whole reactor, so that concurrent modules do not run git, or the scm plugin, each
+            final String detectionKey = changeDetection + ":" + targetBranch + ":" + isWithLineRanges() + ":" + topLevelProject.getBasedir();
+            return ChangeCoordinator.getInstance(mavenSession).getModuleChanges(detectionKey,
+                    mavenSession.getProjects(),
+                    mavenProject,
+                    this::getReactorChangedFiles,
+                    getLog());
+        }
+        return getModuleChangedFiles();
+    }
+
+    private List<FileChange> getModuleChangedFiles() throws MojoExecutionException {
+        if (changeDetection != ChangeDetection.SCM) {
+            final Optional<List<FileChange>> files = getGitChangedFiles(mavenProject.getBasedir());
+            if (files.isPresent()) {
+                return files.get();
+            }
+            getLog().info("Falling back to " + ChangeDetection.SCM + " change detection");
+        }
+        return SCMHelper.getChangedFiles(mavenProject,
+                mavenSession,
+                pluginManager,
+                scmPluginVersion,
+                report,
+                getLog());
+    }
+
+    private List<FileChange> getReactorChangedFiles() throws MojoExecutionException {
+        if (changeDetection == ChangeDetection.WORKTREE) {
+            return scanWorktree(getSourceDirectories(mavenSession.getProjects()));
+        }
+        final MavenProject topLevelProject = mavenSession.getTopLevelProject() != null ? mavenSession.getTopLevelProject() : mavenProject;
+        if (changeDetection != ChangeDetection.SCM) {
+            final Optional<List<FileChange>> files = getGitChangedFiles(topLevelProject.getBasedir());
+            if (files.isPresent()) {
+                return files.get();
+            }
+            getLog().info("Falling back to " + ChangeDetection.SCM + " change detection");
+        }
+        return SCMHelper.getChangedFiles(topLevelProject,
+                mavenSession,
+                pluginManager,
+                scmPluginVersion,
+                report,
+                getLog());
+    }
+
+    private List<FileChange> scanWorktree(final List<File> directories) throws MojoExecutionException {
+        try (BuildReport.Timer timer = report.time(BuildReport.WORKTREE_SCAN)) {
+            worktreeScanner = WorktreeScanner.load(new File(cachedir, "codeformatter-worktree-snapshot"), getLog());
+            final List<FileChange> toReturn = worktreeScanner.scan(directories, getWorkers(), getLog());
+            timer.getPhase().addFilesExamined(toReturn.size());
+            return toReturn;
+        }
+    }
+
+    /**
+     * Whether change detection has to compare contents, to retrieve modified line ranges and import changes
+     */
+    private boolean isWithLineRanges() {
+        return modifiedLinesOnly || (sortAffectedImportsOnly && !skip);
+    }
+
+    private Optional<List<FileChange>> getGitChangedFiles(final File basedir) throws MojoExecutionException {
+        try (BuildReport.Timer timer = report.time(changeDetection == ChangeDetection.BRANCH ? BuildReport.BRANCH_DIFF : BuildReport.GIT_STATUS)) {
+            final Optional<List<FileChange>> toReturn = changeDetection == ChangeDetection.BRANCH ?
+                    GitHelper.getBranchChangedFiles(basedir, targetBranch, new File(cachedir, "codeformatter-merge-base"), isWithLineRanges(), getLog()) :
+                    GitHelper.getChangedFiles(basedir, isWithLineRanges(), getLog());
+            toReturn.ifPresent(files -> timer.getPhase().addFilesExamined(files.size()));
+            return toReturn;
+        }
+    }
+
+    @Override
+    public String getCompilerSources() {
+        return compilerSource;
+    }
+
+    @Override
+    public String getCompilerCompliance() {
+        return compilerCompliance;
+    }
+
+    @Override
+    public String getCompilerCodegenTargetPlatform() {
+        return compilerTargetPlatform;
+    }
+
+    @Override
+    public File getTargetDirectory() {
+        return targetDirectory;
+    }
+
+    @Override
+    public Charset getEncoding() {
+        return Charset.forName(encoding);
     }
 
 }
@@ -1,12 +1,32 @@
 
 package net.cardosi.maven.codeformatter.plugin;
 
+import net.revelc.code.formatter.ConfigurationSource;
+import net.revelc.code.formatter.Formatter;
+import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.formatter.css.CssFormatter;
+import net.revelc.code.formatter.html.HTMLFormatter;
+import net.revelc.code.formatter.java.JavaFormatter;
+import net.revelc.code.formatter.javascript.JavascriptFormatter;
+import net.revelc.code.formatter.json.JsonFormatter;
+import net.revelc.code.formatter.xml.XMLFormatter;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.resource.ResourceManager;
+import org.codehaus.plexus.resource.loader.ResourceNotFoundException;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import static net.cardosi.maven.codeformatter.plugin.RangeFormatterHelper.getFormattingOptions;
 import static org.twdata.maven.mojoexecutor.MojoExecutor.*;
 
 /**
@@ -20,6 +40,15 @@ public class FormatterHelper {
     private static final String NET_REVELC_CODE_FORMATTER = "net.revelc.code.formatter";
     private static final String FORMATTER_MAVEN_PLUGIN = "formatter-maven-plugin";
     private static final String FORMAT_GOAL = "format";
+    private static final String LINE_ENDING_OPTION = "lineending";
+
+    public static final String FILE_RESOURCE = "file";
+    public static final String JAVA_EXTENSION = ".java";
+    public static final String JS_EXTENSION = ".js";
+    public static final String HTML_EXTENSION = ".html";
+    public static final String XML_EXTENSION = ".xml";
+    public static final String JSON_EXTENSION = ".json";
+    public static final String CSS_EXTENSION = ".css";
 
     public static void formatFiles(final MavenProject mavenProject,
                                    final MavenSession mavenSession,
@@ -34,4 +63,118 @@ public class FormatterHelper {
 
     }
 
+    /**
+     * Create the in-process formatters, by file extension, configured the same way the
+     * <code>formatter-maven-plugin</code> does.
+     *
+     * @param configFiles the configuration file of each extension to format; extensions not present are not formatted
+     */
+    public static Map<String, Formatter> getFormatters(final ResourceManager resourceManager,
+                                                       final File basedir,
+                                                       final Map<String, String> configFiles,
+                                                       final boolean useEclipseDefaults,
+                                                       final String javaExclusionPattern,
+                                                       final LineEnding lineEnding,
+                                                       final ConfigurationSource configurationSource,
+                                                       final Log log) throws MojoExecutionException {
+        log.info("Executing getFormatters");
+        final Map<String, Formatter> toReturn = new HashMap<>();
+        for (Map.Entry<String, String> configFile : configFiles.entrySet()) {
+            final Formatter formatter;
+            final Map<String, String> options;
+            switch (configFile.getKey()) {
+                case JAVA_EXTENSION:
+                    final JavaFormatter javaFormatter = new JavaFormatter();
+                    if (javaExclusionPattern != null) {
+                        javaFormatter.setExclusionPattern(javaExclusionPattern);
+                    }
+                    formatter = javaFormatter;
+                    options = getEclipseOptions(resourceManager, basedir, configFile.getValue(), useEclipseDefaults, configurationSource, log);
+                    break;
+                case JS_EXTENSION:
+                    formatter = new JavascriptFormatter();
+                    options = getEclipseOptions(resourceManager, basedir, configFile.getValue(), useEclipseDefaults, configurationSource, log);
+                    break;
+                case HTML_EXTENSION:
+                    formatter = new HTMLFormatter();
+                    options = getPropertiesOptions(resourceManager, basedir, configFile.getValue(), log);
+                    break;
+                case XML_EXTENSION:
+                    formatter = new XMLFormatter();
+                    options = getPropertiesOptions(resourceManager, basedir, configFile.getValue(), log);
+                    options.put(LINE_ENDING_OPTION, lineEnding.getChars());
+                    break;
+                case JSON_EXTENSION:
+                    formatter = new JsonFormatter();
+                    options = getPropertiesOptions(resourceManager, basedir, configFile.getValue(), log);
+                    options.put(LINE_ENDING_OPTION, lineEnding.getChars());
+                    break;
+                case CSS_EXTENSION:
+                    formatter = new CssFormatter();
+                    options = getPropertiesOptions(resourceManager, basedir, configFile.getValue(), log);
+                    break;
+                default:
+                    throw new MojoExecutionException("Unsupported extension " + configFile.getKey());
+            }
+            formatter.init(options, configurationSource);
+            toReturn.put(configFile.getKey(), formatter);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Format the given content of the given file in memory, with the formatter matching its extension.
+     *
+     * @return the formatted content, or <code>Optional.empty()</code> if the file has not been modified
+     */
+    public static Optional<String> formatCode(final Map<String, Formatter> formatters,
+                                              final File file,
+                                              final String code,
+                                              final LineEnding lineEnding,
+                                              final Log log) {
+        final String name = file.getName();
+        final int extensionIndex = name.lastIndexOf('.');
+        final Formatter formatter = extensionIndex >= 0 ? formatters.get(name.substring(extensionIndex)) : null;
+        if (formatter == null) {
+            log.debug(file + " formatting is skipped");
+            return Optional.empty();
+        }
+        final String formatted = formatter.formatFile(file, code, lineEnding);
+        return formatted == null || formatted.equals(code) ? Optional.empty() : Optional.of(formatted);
+    }
+
+    private static Map<String, String> getEclipseOptions(final ResourceManager resourceManager,
+                                                         final File basedir,
+                                                         final String configFile,
+                                                         final boolean useEclipseDefaults,
+                                                         final ConfigurationSource configurationSource,
+                                                         final Log log) throws MojoExecutionException {
+        return getFormattingOptions(resourceManager,
+                basedir,
+                configFile,
+                useEclipseDefaults,
+                configurationSource.getCompilerSources(),
+                configurationSource.getCompilerCompliance(),
+                configurationSource.getCompilerCodegenTargetPlatform(),
+                log);
+    }
+
+    private static Map<String, String> getPropertiesOptions(final ResourceManager resourceManager,
+                                                            final File basedir,
+                                                            final String configFile,
+                                                            final Log log) throws MojoExecutionException {
+        log.debug("Reading properties options from " + configFile);
+        resourceManager.addSearchPath(FILE_RESOURCE, basedir.getAbsolutePath());
+        final Properties properties = new Properties();
+        try (InputStream configInput = resourceManager.getResourceAsInputStream(configFile)) {
+            properties.load(configInput);
+        } catch (ResourceNotFoundException e) {
+            throw new MojoExecutionException("Cannot find config file [" + configFile + "]");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Cannot read config file [" + configFile + "]", e);
+        }
+        final Map<String, String> toReturn = new HashMap<>();
+        properties.stringPropertyNames().forEach(key -> toReturn.put(key, properties.getProperty(key)));
+        return toReturn;
+    }
 }
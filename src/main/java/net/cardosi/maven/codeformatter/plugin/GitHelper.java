@@ -0,0 +1,305 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.StatusCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffAlgorithm;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.submodule.SubmoduleWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.JAVA_EXTENSION;
+
+/**
+ * Class responsible of in-process git change detection.
+ * <p>
+ * The repository index and object store are read directly, and the index stat cache is used to spot dirty files,
+ * so no process is forked and no diff file is written.
+ */
+public class GitHelper {
+
+    private GitHelper() {
+    }
+
+    private static final DiffAlgorithm DIFF_ALGORITHM = DiffAlgorithm.getAlgorithm(DiffAlgorithm.SupportedAlgorithm.HISTOGRAM);
+
+    /**
+     * Retrieve the absolute paths of the files under <code>basedir</code> that differ from <code>HEAD</code>,
+     * either staged or not. When <code>withLineRanges</code> is set, the working tree content of each file is
+     * compared with the <code>HEAD</code> one, to retrieve the modified line ranges, whether the imports of java
+     * files are affected, and to recognize binary and mode-only changes.
+     * Returns <code>Optional.empty()</code> if <code>basedir</code> is not inside a git repository.
+     */
+    public static Optional<List<FileChange>> getChangedFiles(final File basedir,
+                                                             final boolean withLineRanges,
+                                                             final Log log) throws MojoExecutionException {
+        log.info("Reading git status of " + basedir);
+        final FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().readEnvironment().findGitDir(basedir);
+        if (repositoryBuilder.getGitDir() == null) {
+            log.info("No git repository found for " + basedir);
+            return Optional.empty();
+        }
+        try (Repository repository = repositoryBuilder.build(); Git git = new Git(repository)) {
+            final Path workTree = repository.getWorkTree().getCanonicalFile().toPath();
+            final String modulePath = workTree.relativize(basedir.getCanonicalFile().toPath()).toString().replace(File.separatorChar, '/');
+            final StatusCommand statusCommand = git.status().setIgnoreSubmodules(SubmoduleWalk.IgnoreSubmoduleMode.ALL);
+            if (!modulePath.isEmpty()) {
+                statusCommand.addPath(modulePath);
+            }
+            final Status status = statusCommand.call();
+            final Set<String> changedPaths = new TreeSet<>();
+            changedPaths.addAll(status.getAdded());
+            changedPaths.addAll(status.getChanged());
+            changedPaths.addAll(status.getModified());
+            final RevTree headTree = withLineRanges ? getHeadTree(repository) : null;
+            final List<FileChange> toReturn = new ArrayList<>(changedPaths.size());
+            for (String changedPath : changedPaths) {
+                final File file = workTree.resolve(changedPath).toFile();
+                final ChangeType changeType = status.getAdded().contains(changedPath) ? ChangeType.ADDED : ChangeType.MODIFIED;
+                toReturn.add(headTree != null ? getFileChange(repository, headTree, changedPath, file, changeType) : new FileChange(file, Collections.emptyList(), changeType));
+            }
+            log.debug("Changed files " + toReturn);
+            return Optional.of(toReturn);
+        } catch (IOException | GitAPIException e) {
+            throw new MojoExecutionException("Failed to read git status of " + basedir, e);
+        }
+    }
+
+    /**
+     * Retrieve the canonical paths of the files under <code>directory</code> that are untracked, or that differ from
+     * <code>HEAD</code>, either staged or not; ignored files are left out.
+     * Returns <code>Optional.empty()</code> if <code>directory</code> is not inside a git repository.
+     */
+    public static Optional<Set<File>> getUncommittedFiles(final File directory,
+                                                          final Log log) throws MojoExecutionException {
+        log.info("Reading git status of " + directory);
+        final FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().readEnvironment().findGitDir(directory);
+        if (repositoryBuilder.getGitDir() == null) {
+            log.info("No git repository found for " + directory);
+            return Optional.empty();
+        }
+        try (Repository repository = repositoryBuilder.build(); Git git = new Git(repository)) {
+            final Path workTree = repository.getWorkTree().getCanonicalFile().toPath();
+            final String directoryPath = workTree.relativize(directory.getCanonicalFile().toPath()).toString().replace(File.separatorChar, '/');
+            final StatusCommand statusCommand = git.status().setIgnoreSubmodules(SubmoduleWalk.IgnoreSubmoduleMode.ALL);
+            if (!directoryPath.isEmpty()) {
+                statusCommand.addPath(directoryPath);
+            }
+            final Status status = statusCommand.call();
+            final Set<String> uncommittedPaths = new HashSet<>();
+            uncommittedPaths.addAll(status.getAdded());
+            uncommittedPaths.addAll(status.getChanged());
+            uncommittedPaths.addAll(status.getModified());
+            uncommittedPaths.addAll(status.getUntracked());
+            final Set<File> toReturn = new HashSet<>(uncommittedPaths.size() * 2);
+            for (String uncommittedPath : uncommittedPaths) {
+                toReturn.add(workTree.resolve(uncommittedPath).toFile());
+            }
+            log.debug("Uncommitted files " + toReturn);
+            return Optional.of(toReturn);
+        } catch (IOException | GitAPIException e) {
+            throw new MojoExecutionException("Failed to read git status of " + directory, e);
+        }
+    }
+
+    /**
+     * Retrieve the absolute paths of the files under <code>basedir</code> that differ between <code>HEAD</code> and
+     * its merge-base with <code>targetBranch</code>, with renames detected. When <code>withLineRanges</code> is set,
+     * the working tree content of each file is compared with the merge-base one, as the working tree content is the
+     * one formatted, to retrieve the modified line ranges, whether the imports of java files are affected, and to
+     * recognize binary files; uncommitted edits of those files are then included in the ranges.
+     * <p>
+     * The merge-base is cached in <code>mergeBaseFile</code>, together with the commits it has been computed from, so
+     * it is computed again only when <code>HEAD</code> or the target branch move.
+     * Returns <code>Optional.empty()</code> if <code>basedir</code> is not inside a git repository.
+     */
+    public static Optional<List<FileChange>> getBranchChangedFiles(final File basedir,
+                                                                   final String targetBranch,
+                                                                   final File mergeBaseFile,
+                                                                   final boolean withLineRanges,
+                                                                   final Log log) throws MojoExecutionException {
+        log.info("Reading git differences of " + basedir + " with " + targetBranch);
+        final FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().readEnvironment().findGitDir(basedir);
+        if (repositoryBuilder.getGitDir() == null) {
+            log.info("No git repository found for " + basedir);
+            return Optional.empty();
+        }
+        try (Repository repository = repositoryBuilder.build();
+             RevWalk revWalk = new RevWalk(repository);
+             DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            final Path workTree = repository.getWorkTree().getCanonicalFile().toPath();
+            final String modulePath = workTree.relativize(basedir.getCanonicalFile().toPath()).toString().replace(File.separatorChar, '/');
+            final ObjectId head = repository.resolve(Constants.HEAD);
+            final ObjectId target = repository.resolve(targetBranch);
+            if (head == null || target == null) {
+                throw new MojoExecutionException("Failed to resolve " + (head == null ? Constants.HEAD : targetBranch) + " in " + workTree);
+            }
+            final ObjectId mergeBase = getMergeBase(revWalk, head, target, mergeBaseFile, log);
+            diffFormatter.setRepository(repository);
+            diffFormatter.setDetectRenames(true);
+            if (!modulePath.isEmpty()) {
+                diffFormatter.setPathFilter(PathFilter.create(modulePath));
+            }
+            final List<FileChange> toReturn = new ArrayList<>();
+            for (DiffEntry diffEntry : diffFormatter.scan(revWalk.parseCommit(mergeBase).getTree(), revWalk.parseCommit(head).getTree())) {
+                final String path = diffEntry.getChangeType() == DiffEntry.ChangeType.DELETE ? diffEntry.getOldPath() : diffEntry.getNewPath();
+                final File file = workTree.resolve(path).toFile();
+                final ChangeType changeType = getChangeType(diffEntry);
+                if (withLineRanges && changeType.isFormattable()) {
+                    final ObjectId baseId = changeType == ChangeType.ADDED ? null : diffEntry.getOldId().toObjectId();
+                    toReturn.add(getWorkTreeFileChange(repository, baseId, file, changeType));
+                } else {
+                    toReturn.add(new FileChange(file, Collections.emptyList(), changeType));
+                }
+            }
+            log.debug("Changed files " + toReturn);
+            return Optional.of(toReturn);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to read git differences of " + basedir + " with " + targetBranch, e);
+        }
+    }
+
+    private static ObjectId getMergeBase(final RevWalk revWalk,
+                                         final ObjectId head,
+                                         final ObjectId target,
+                                         final File mergeBaseFile,
+                                         final Log log) throws IOException, MojoExecutionException {
+        final String key = head.name() + " " + target.name() + " ";
+        if (mergeBaseFile.isFile()) {
+            final String cached = new String(Files.readAllBytes(mergeBaseFile.toPath()), StandardCharsets.UTF_8).trim();
+            if (cached.startsWith(key) && ObjectId.isId(cached.substring(key.length()))) {
+                log.debug("Using cached merge-base " + cached.substring(key.length()));
+                return ObjectId.fromString(cached.substring(key.length()));
+            }
+        }
+        revWalk.setRevFilter(RevFilter.MERGE_BASE);
+        revWalk.markStart(revWalk.parseCommit(head));
+        revWalk.markStart(revWalk.parseCommit(target));
+        final RevCommit mergeBase = revWalk.next();
+        revWalk.reset();
+        revWalk.setRevFilter(RevFilter.ALL);
+        if (mergeBase == null) {
+            throw new MojoExecutionException("No merge-base between " + head.name() + " and " + target.name());
+        }
+        log.info("Merge-base " + mergeBase.name());
+        try {
+            Files.createDirectories(mergeBaseFile.getAbsoluteFile().getParentFile().toPath());
+            Files.write(mergeBaseFile.toPath(), (key + mergeBase.name()).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // the merge-base will be computed again next time
+            log.warn("Failed to store merge-base to " + mergeBaseFile + ": " + e.getMessage());
+        }
+        return mergeBase;
+    }
+
+    private static ChangeType getChangeType(final DiffEntry diffEntry) {
+        switch (diffEntry.getChangeType()) {
+            case ADD:
+            case COPY:
+                return ChangeType.ADDED;
+            case DELETE:
+                return ChangeType.DELETED;
+            case RENAME:
+                return diffEntry.getScore() == 100 ? ChangeType.MOVED : ChangeType.RENAMED;
+            default:
+                return diffEntry.getOldId().equals(diffEntry.getNewId()) ? ChangeType.MODE_ONLY : ChangeType.MODIFIED;
+        }
+    }
+
+    private static RevTree getHeadTree(final Repository repository) throws IOException {
+        final ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            return null;
+        }
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            return revWalk.parseCommit(head).getTree();
+        }
+    }
+
+    private static FileChange getFileChange(final Repository repository,
+                                            final RevTree headTree,
+                                            final String path,
+                                            final File file,
+                                            final ChangeType changeType) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(repository, path, headTree)) {
+            return getWorkTreeFileChange(repository, treeWalk != null ? treeWalk.getObjectId(0) : null, file, changeType);
+        }
+    }
+
+    /**
+     * Compare the working tree content of <code>file</code> with the given base blob, or consider it all new if
+     * <code>baseId</code> is <code>null</code>
+     */
+    private static FileChange getWorkTreeFileChange(final Repository repository,
+                                                    final ObjectId baseId,
+                                                    final File file,
+                                                    final ChangeType changeType) throws IOException {
+        if (!file.isFile()) {
+            return new FileChange(file, Collections.emptyList(), ChangeType.DELETED);
+        }
+        final byte[] workTreeContent = Files.readAllBytes(file.toPath());
+        if (RawText.isBinary(workTreeContent)) {
+            return new FileChange(file, Collections.emptyList(), ChangeType.BINARY);
+        }
+        if (baseId == null) {
+            return new FileChange(file, Collections.emptyList(), changeType);
+        }
+        final byte[] baseContent = repository.open(baseId).getCachedBytes();
+        if (RawText.isBinary(baseContent)) {
+            // binary turned into text: the whole file is new text content
+            return new FileChange(file, Collections.emptyList(), changeType);
+        }
+        if (Arrays.equals(baseContent, workTreeContent)) {
+            // differs by mode only, by a move, or by a change reverted in the working tree
+            return new FileChange(file, Collections.emptyList(), changeType == ChangeType.RENAMED ? ChangeType.MOVED : ChangeType.MODE_ONLY);
+        }
+        final RawText baseText = new RawText(baseContent);
+        final RawText workTreeText = new RawText(workTreeContent);
+        final List<Edit> edits = DIFF_ALGORITHM.diff(RawTextComparator.DEFAULT, baseText, workTreeText);
+        return new FileChange(file, getLineRanges(edits), changeType, getImportChange(file, baseText, workTreeText, edits));
+    }
+
+    private static ImportChange getImportChange(final File file,
+                                                final RawText oldText,
+                                                final RawText newText,
+                                                final List<Edit> edits) {
+        return file.getName().endsWith(JAVA_EXTENSION) ? ImportChangeHelper.getImportChange(oldText, newText, edits) : ImportChange.UNKNOWN;
+    }
+
+    private static List<LineRange> getLineRanges(final List<Edit> edits) {
+        final List<LineRange> toReturn = new ArrayList<>();
+        for (Edit edit : edits) {
+            if (edit.getEndB() > edit.getBeginB()) {
+                toReturn.add(new LineRange(edit.getBeginB() + 1, edit.getEndB()));
+            } else {
+                // pure deletion: the lines around the removed ones are affected
+                toReturn.add(new LineRange(Math.max(1, edit.getBeginB()), edit.getBeginB() + 1));
+            }
+        }
+        return toReturn;
+    }
+}
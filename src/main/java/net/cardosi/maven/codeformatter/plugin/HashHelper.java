@@ -0,0 +1,54 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Class responsible of the hashes identifying contents and configurations
+ */
+public class HashHelper {
+
+    private HashHelper() {
+    }
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * The length in bytes of the hashes computed by {@link #getDigest()}
+     */
+    public static final int HASH_LENGTH = 32;
+
+    /**
+     * Create a new digest of the algorithm used for every hash
+     */
+    public static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Lowercase hexadecimal representation of the given bytes
+     */
+    public static String toHex(final byte[] bytes) {
+        final StringBuilder toReturn = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            toReturn.append(String.format("%02x", b));
+        }
+        return toReturn.toString();
+    }
+
+    /**
+     * The bytes of the given hexadecimal representation
+     */
+    public static byte[] fromHex(final String hex) {
+        final byte[] toReturn = new byte[hex.length() / 2];
+        for (int i = 0; i < toReturn.length; i++) {
+            toReturn[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return toReturn;
+    }
+}
@@ -0,0 +1,156 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <code>CacheStore</code> keeping each key as a resource of an HTTP server, e.g. a WebDAV server or an artifact
+ * repository shared by CI agents.
+ * <p>
+ * A key is looked up with <code>HEAD &lt;url&gt;/&lt;key&gt;</code>, that answers <code>200</code> when it is stored
+ * and <code>404</code> otherwise, and it is stored with an empty <code>PUT &lt;url&gt;/&lt;key&gt;</code>. Credentials
+ * given in the url user info are sent with basic authentication, and never appear in error messages. Any other
+ * answer is an error.
+ * <p>
+ * Keys are requested by a few concurrent connections, and the first failure, e.g. a timeout, aborts the requests not
+ * sent yet: a slow store costs about one timeout, whatever the number of keys.
+ */
+public class HttpCacheStore implements CacheStore {
+
+    private static final int CONNECTIONS = 8;
+
+    /**
+     * The url of the store, without user info
+     */
+    private final String url;
+    private final int timeoutMillis;
+    private final String authorization;
+
+    /**
+     * @param timeoutMillis the timeout of both connecting and reading each answer
+     */
+    public HttpCacheStore(final URL url,
+                          final int timeoutMillis) throws MalformedURLException {
+        final String external = new URL(url.getProtocol(), url.getHost(), url.getPort(), url.getPath()).toExternalForm();
+        this.url = external.endsWith("/") ? external : external + "/";
+        this.timeoutMillis = timeoutMillis;
+        this.authorization = url.getUserInfo() != null ?
+                "Basic " + Base64.getEncoder().encodeToString(url.getUserInfo().getBytes(StandardCharsets.UTF_8)) :
+                null;
+    }
+
+    @Override
+    public Set<String> getStoredKeys(final Collection<String> keys) throws IOException {
+        final Set<String> toReturn = new HashSet<>();
+        requestAll(keys, key -> {
+            final int responseCode = request("HEAD", key);
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                synchronized (toReturn) {
+                    toReturn.add(key);
+                }
+            } else if (responseCode != HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new IOException("Unexpected response " + responseCode + " looking up " + url + key);
+            }
+        });
+        return toReturn;
+    }
+
+    @Override
+    public void store(final Collection<String> keys) throws IOException {
+        requestAll(keys, key -> {
+            final int responseCode = request("PUT", key);
+            if (responseCode < 200 || responseCode > 299) {
+                throw new IOException("Unexpected response " + responseCode + " storing " + url + key);
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface KeyRequest {
+
+        void send(final String key) throws IOException;
+    }
+
+    /**
+     * Send the request of each key with up to <code>CONNECTIONS</code> concurrent connections, and stop at the
+     * first failure
+     */
+    private static void requestAll(final Collection<String> keys,
+                                   final KeyRequest keyRequest) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(CONNECTIONS, keys.size()));
+        try {
+            final CompletionService<Void> completionService = new ExecutorCompletionService<>(executorService);
+            for (String key : keys) {
+                final Callable<Void> task = () -> {
+                    keyRequest.send(key);
+                    return null;
+                };
+                completionService.submit(task);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting the cache store");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } finally {
+            // requests not sent yet are dropped, the ones waiting for an answer end with their own timeout
+            executorService.shutdownNow();
+        }
+    }
+
+    private int request(final String method,
+                        final String key) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url + key).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setUseCaches(false);
+            if (authorization != null) {
+                connection.setRequestProperty("Authorization", authorization);
+            }
+            if ("PUT".equals(method)) {
+                connection.setDoOutput(true);
+                connection.getOutputStream().close();
+            }
+            final int toReturn = connection.getResponseCode();
+            // consuming the answer lets the connection be reused by the following request
+            try (InputStream input = toReturn < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (input != null) {
+                    final byte[] buffer = new byte[1024];
+                    while (input.read(buffer) != -1) {
+                        // discarded
+                    }
+                }
+            }
+            return toReturn;
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+/**
+ * How the modifications of a java file relate to its imports, i.e. whether sorting them again could change anything
+ */
+public enum ImportChange {
+
+    /**
+     * Not known, e.g. for new files or when line ranges are not retrieved: imports have to be sorted
+     */
+    UNKNOWN,
+    /**
+     * The package and import block changed
+     */
+    BLOCK,
+    /**
+     * Only the usages of imported simple names changed, so that some imports may have become unused
+     */
+    USAGES,
+    /**
+     * Neither the package and import block nor the usages of imported simple names changed
+     */
+    NONE;
+
+    /**
+     * Whether imports have to be sorted again, given whether unused imports are removed
+     */
+    public boolean requiresImportSorting(final boolean removeUnused) {
+        return this == UNKNOWN || this == BLOCK || (this == USAGES && removeUnused);
+    }
+}
@@ -0,0 +1,140 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.RawText;
+
+import java.util.*;
+
+/**
+ * Class responsible of telling whether the modifications of a java file may change the result of sorting its imports.
+ * <p>
+ * Only the package and import block and the modified lines are looked at, as plain text: no file is parsed.
+ */
+public class ImportChangeHelper {
+
+    private ImportChangeHelper() {
+    }
+
+    private static final String PACKAGE_KEYWORD = "package ";
+    private static final String IMPORT_KEYWORD = "import ";
+    private static final String STATIC_KEYWORD = "static ";
+
+    /**
+     * Classify the given <code>edits</code>, turning <code>oldText</code> into <code>newText</code>.
+     * <p>
+     * The change is a <code>BLOCK</code> one if any edit overlaps the package and import block of either side;
+     * otherwise, it is a <code>USAGES</code> one if the removed and the added lines do not mention the simple names
+     * imported by the file the same number of times, so that a name may have gained or lost its last usage.
+     */
+    public static ImportChange getImportChange(final RawText oldText,
+                                               final RawText newText,
+                                               final List<Edit> edits) {
+        final int[] oldBlock = getImportBlock(oldText);
+        final int[] newBlock = getImportBlock(newText);
+        for (Edit edit : edits) {
+            if (overlaps(edit.getBeginA(), edit.getEndA(), oldBlock) || overlaps(edit.getBeginB(), edit.getEndB(), newBlock)) {
+                return ImportChange.BLOCK;
+            }
+        }
+        final Set<String> importedNames = getImportedNames(newText, newBlock);
+        if (importedNames.isEmpty()) {
+            return ImportChange.NONE;
+        }
+        final Map<String, Integer> usages = new HashMap<>();
+        for (Edit edit : edits) {
+            for (int i = edit.getBeginA(); i < edit.getEndA(); i++) {
+                countNames(oldText.getString(i), importedNames, usages, -1);
+            }
+            for (int i = edit.getBeginB(); i < edit.getEndB(); i++) {
+                countNames(newText.getString(i), importedNames, usages, 1);
+            }
+        }
+        for (int count : usages.values()) {
+            if (count != 0) {
+                return ImportChange.USAGES;
+            }
+        }
+        return ImportChange.NONE;
+    }
+
+    /**
+     * The 0-based, half-open range of lines from the package declaration, or the first import, to the last import;
+     * empty when the file declares neither
+     */
+    private static int[] getImportBlock(final RawText text) {
+        int start = -1;
+        int end = 0;
+        boolean inComment = false;
+        for (int i = 0; i < text.size(); i++) {
+            final String line = text.getString(i).trim();
+            if (inComment) {
+                inComment = !line.contains("*/");
+            } else if (line.startsWith("/*")) {
+                inComment = !line.contains("*/");
+            } else if (line.startsWith(PACKAGE_KEYWORD) || line.startsWith(IMPORT_KEYWORD)) {
+                start = start < 0 ? i : start;
+                end = i + 1;
+            } else if (!line.isEmpty() && !line.startsWith("//")) {
+                // the first type declaration, or one of its annotations
+                break;
+            }
+        }
+        return new int[]{Math.max(start, 0), end};
+    }
+
+    private static boolean overlaps(final int begin,
+                                    final int end,
+                                    final int[] block) {
+        return begin < block[1] && end > block[0];
+    }
+
+    /**
+     * The simple names of the single-type and single-static imports of the block; on-demand imports import no name
+     */
+    private static Set<String> getImportedNames(final RawText text,
+                                                final int[] block) {
+        final Set<String> toReturn = new HashSet<>();
+        for (int i = block[0]; i < block[1]; i++) {
+            String line = text.getString(i).trim();
+            if (!line.startsWith(IMPORT_KEYWORD)) {
+                continue;
+            }
+            line = line.substring(IMPORT_KEYWORD.length()).trim();
+            if (line.startsWith(STATIC_KEYWORD)) {
+                line = line.substring(STATIC_KEYWORD.length()).trim();
+            }
+            final int end = line.indexOf(';');
+            final String qualifiedName = (end >= 0 ? line.substring(0, end) : line).trim();
+            final String simpleName = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+            if (!simpleName.equals("*") && !simpleName.isEmpty()) {
+                toReturn.add(simpleName);
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Add <code>increment</code> to the count of each of the <code>names</code> found as a java identifier in the
+     * given <code>line</code>
+     */
+    private static void countNames(final String line,
+                                   final Set<String> names,
+                                   final Map<String, Integer> counts,
+                                   final int increment) {
+        int i = 0;
+        while (i < line.length()) {
+            if (Character.isJavaIdentifierStart(line.charAt(i))) {
+                final int start = i;
+                while (i < line.length() && Character.isJavaIdentifierPart(line.charAt(i))) {
+                    i++;
+                }
+                final String identifier = line.substring(start, i);
+                if (names.contains(identifier)) {
+                    counts.merge(identifier, increment, Integer::sum);
+                }
+            } else {
+                i++;
+            }
+        }
+    }
+}
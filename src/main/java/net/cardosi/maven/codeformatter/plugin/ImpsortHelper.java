@@ -1,12 +1,46 @@
 
 package net.cardosi.maven.codeformatter.plugin;
 
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import net.revelc.code.impsort.Grouper;
+import net.revelc.code.impsort.ImpSort;
+import net.revelc.code.impsort.Import;
+import net.revelc.code.impsort.LineEnding;
+import net.revelc.code.impsort.Result;
+import net.revelc.code.impsort.ex.ImpSortException;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.BuildPluginManager;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.project.MavenProject;
 
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 import static org.twdata.maven.mojoexecutor.MojoExecutor.*;
 
 /**
@@ -20,6 +54,9 @@ public class ImpsortHelper {
     private static final String NET_REVELC_CODE = "net.revelc.code";
     private static final String IMPSORT_MAVEN_PLUGIN = "impsort-maven-plugin";
     private static final String IMPSORT_GOAL = "sort";
+    private static final String OLD_COMPLIANCE = "^1[.][01234]$";
+    private static final String LEGACY_COMPLIANCE = "^1[.][56789]$";
+    private static final String LANGUAGE_LEVEL_PREFIX = "JAVA_";
 
     public static void fixImports(final MavenProject mavenProject,
                                    final MavenSession mavenSession,
@@ -34,4 +71,245 @@ public class ImpsortHelper {
 
     }
 
+    /**
+     * Create an in-process import sorter configured the same way the <code>impsort-maven-plugin</code> does
+     */
+    public static ImpSort getImpSort(final Charset sourceEncoding,
+                                     final String groups,
+                                     final String staticGroups,
+                                     final boolean staticAfter,
+                                     final boolean joinStaticWithNonStatic,
+                                     final boolean breadthFirstComparator,
+                                     final boolean removeUnused,
+                                     final boolean treatSamePackageAsUnused,
+                                     final net.revelc.code.formatter.LineEnding lineEnding,
+                                     final String compliance,
+                                     final Log log) {
+        log.info("Executing getImpSort");
+        final Grouper grouper = new Grouper(groups, staticGroups, staticAfter, joinStaticWithNonStatic, breadthFirstComparator);
+        return new ImpSort(sourceEncoding,
+                grouper,
+                removeUnused,
+                treatSamePackageAsUnused,
+                LineEnding.valueOf(lineEnding.name()),
+                getLanguageLevel(compliance));
+    }
+
+    /**
+     * Sort, in memory, the imports of the given current <code>code</code> of the java <code>file</code>, which is
+     * never read.
+     *
+     * @return the whole sorted content, or <code>Optional.empty()</code> if the imports are already sorted
+     */
+    public static Optional<String> sortImports(final ImpSort impSort,
+                                               final File file,
+                                               final String code,
+                                               final Log log) throws MojoExecutionException {
+        log.debug("Sorting imports of " + file);
+        try {
+            final Result result = parseCode(impSort, file.toPath(), code, log);
+            if (result.isSorted()) {
+                return Optional.empty();
+            }
+            return Optional.of(getSortedContent(result));
+        } catch (IOException | RuntimeException e) {
+            throw new MojoExecutionException("Failed to sort imports of " + file, e);
+        }
+    }
+
+    /**
+     * Parse the given <code>code</code> exactly as <code>ImpSort.parseFile</code> parses the content of
+     * <code>path</code>. <code>ImpSort</code> only reads its input from disk, so its configuration and its import
+     * section helpers are accessed reflectively.
+     */
+    @SuppressWarnings("unchecked")
+    private static Result parseCode(final ImpSort impSort,
+                                    final Path path,
+                                    final String code,
+                                    final Log log) throws IOException, MojoExecutionException {
+        if (code.isEmpty()) {
+            return Result.EMPTY_FILE;
+        }
+        final LineEnding configuredLineEnding = (LineEnding) getField(ImpSort.class, impSort, "lineEnding");
+        final LineEnding lineEnding;
+        if (configuredLineEnding == LineEnding.KEEP) {
+            lineEnding = LineEnding.determineLineEnding(code);
+            if (lineEnding == LineEnding.UNKNOWN) {
+                throw new ImpSortException(path, ImpSortException.Reason.UNKNOWN_LINE_ENDING);
+            }
+        } else {
+            lineEnding = configuredLineEnding;
+        }
+        final String lineSeparator = lineEnding.getChars();
+        final Charset sourceEncoding = (Charset) getField(ImpSort.class, impSort, "sourceEncoding");
+        final List<String> fileLines = getLines(code);
+        final ParserConfiguration parserConfiguration = new ParserConfiguration()
+                .setLanguageLevel((ParserConfiguration.LanguageLevel) getField(ImpSort.class, impSort, "languageLevel"));
+        final ParseResult<CompilationUnit> parseResult = new JavaParser(parserConfiguration).parse(code);
+        final CompilationUnit compilationUnit = parseResult.getResult()
+                .orElseThrow(() -> new ImpSortException(path, ImpSortException.Reason.UNABLE_TO_PARSE));
+        if (!parseResult.isSuccessful()) {
+            log.debug("Problems parsing " + path + ": " + parseResult.getProblems());
+            throw new ImpSortException(path, ImpSortException.Reason.PARTIAL_PARSE);
+        }
+        final NodeList<ImportDeclaration> imports = compilationUnit.getImports();
+        if (imports.isEmpty()) {
+            return newResult(path, sourceEncoding, fileLines, 0, fileLines.size(), "", "", Collections.emptyList(), lineEnding);
+        }
+        // the import section spans the imports and the comments between the package declaration and the last import
+        final Comparator<Node> byPosition = Comparator.comparing(node -> node.getBegin().get());
+        final Position packageEnd = compilationUnit.getPackageDeclaration()
+                .map(packageDeclaration -> packageDeclaration.getEnd().get())
+                .orElse(compilationUnit.getBegin().get());
+        final Position lastImportBegin = imports.stream().max(byPosition).get().getBegin().get();
+        final List<Node> importSection = Stream.<Node>concat(compilationUnit.getOrphanComments().stream()
+                                .filter(comment -> comment.getBegin().get().isAfter(packageEnd) && comment.getBegin().get().isBefore(lastImportBegin)),
+                        imports.stream())
+                .sorted(byPosition)
+                .collect(Collectors.toList());
+        final Node first = importSection.get(0);
+        int start = first.getComment().map(comment -> comment.getBegin().get()).orElse(first.getBegin().get()).line - 1;
+        int stop = importSection.get(importSection.size() - 1).getEnd().get().line;
+        while (start > 0 && fileLines.get(start - 1).trim().isEmpty()) {
+            start--;
+        }
+        while (stop < fileLines.size() && fileLines.get(stop).trim().isEmpty()) {
+            stop++;
+        }
+        final String originalSection = String.join(lineSeparator, fileLines.subList(start, stop)) + lineSeparator;
+        final Set<Import> sortedImports = (Set<Import>) invokeImpSort("convertImportSection",
+                new Class<?>[]{List.class, String.class},
+                importSection,
+                lineSeparator);
+        if ((Boolean) getField(ImpSort.class, impSort, "removeUnused")) {
+            invokeImpSort("removeUnusedImports",
+                    new Class<?>[]{Set.class, Set.class},
+                    sortedImports,
+                    invokeImpSort("tokensInUse", new Class<?>[]{CompilationUnit.class}, compilationUnit));
+            if ((Boolean) getField(ImpSort.class, impSort, "treatSamePackageAsUnused")) {
+                invokeImpSort("removeSamePackageImports",
+                        new Class<?>[]{Set.class, Optional.class},
+                        sortedImports,
+                        compilationUnit.getPackageDeclaration());
+            }
+        }
+        String newSection = ((Grouper) getField(ImpSort.class, impSort, "grouper")).groupedImports(sortedImports, lineSeparator);
+        if (start > 0) {
+            newSection = lineSeparator + newSection;
+        }
+        if (stop < fileLines.size()) {
+            newSection = newSection + lineSeparator;
+        }
+        return newResult(path, sourceEncoding, fileLines, start, stop, originalSection, newSection, sortedImports, lineEnding);
+    }
+
+    /**
+     * Split the given code in lines the same way <code>ImpSort</code> does
+     */
+    private static List<String> getLines(final String code) {
+        final List<String> toReturn = new ArrayList<>();
+        try (Scanner scanner = new Scanner(code)) {
+            while (scanner.hasNextLine()) {
+                toReturn.add(scanner.nextLine());
+            }
+        }
+        return toReturn;
+    }
+
+    private static Result newResult(final Path path,
+                                    final Charset sourceEncoding,
+                                    final List<String> fileLines,
+                                    final int start,
+                                    final int stop,
+                                    final String originalSection,
+                                    final String newSection,
+                                    final Collection<Import> imports,
+                                    final LineEnding lineEnding) throws MojoExecutionException {
+        try {
+            final Constructor<Result> constructor = Result.class.getDeclaredConstructor(Path.class,
+                    Charset.class,
+                    List.class,
+                    int.class,
+                    int.class,
+                    String.class,
+                    String.class,
+                    Collection.class,
+                    LineEnding.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(path, sourceEncoding, fileLines, start, stop, originalSection, newSection, imports, lineEnding);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw unsupportedVersion(e);
+        }
+    }
+
+    private static Object invokeImpSort(final String methodName,
+                                        final Class<?>[] parameterTypes,
+                                        final Object... arguments) throws MojoExecutionException {
+        try {
+            final Method method = ImpSort.class.getDeclaredMethod(methodName, parameterTypes);
+            method.setAccessible(true);
+            return method.invoke(null, arguments);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw unsupportedVersion(e);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw unsupportedVersion(e);
+        }
+    }
+
+    /**
+     * Render the sorted content exactly as <code>Result.saveSorted</code> would write it, without touching the disk.
+     * <code>Result</code> exposes no accessor for its parsed state, so it is read reflectively.
+     */
+    @SuppressWarnings("unchecked")
+    private static String getSortedContent(final Result result) throws MojoExecutionException {
+        final List<String> fileLines = (List<String>) getField(Result.class, result, "fileLines");
+        final int start = (Integer) getField(Result.class, result, "start");
+        final int stop = (Integer) getField(Result.class, result, "stop");
+        final String newSection = (String) getField(Result.class, result, "newSection");
+        final String lineEnding = ((LineEnding) getField(Result.class, result, "lineEnding")).getChars();
+        final List<String> lines = new ArrayList<>(fileLines.subList(0, start));
+        lines.addAll(Arrays.asList(newSection.split(lineEnding)));
+        final List<String> remaining = fileLines.subList(stop, fileLines.size());
+        if (!remaining.isEmpty()) {
+            lines.add("");
+        }
+        lines.addAll(remaining);
+        final StringBuilder toReturn = new StringBuilder();
+        for (String line : lines) {
+            toReturn.append(line).append(lineEnding);
+        }
+        return toReturn.toString();
+    }
+
+    private static Object getField(final Class<?> type,
+                                   final Object instance,
+                                   final String fieldName) throws MojoExecutionException {
+        try {
+            final Field field = type.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return field.get(instance);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw unsupportedVersion(e);
+        }
+    }
+
+    private static MojoExecutionException unsupportedVersion(final Exception e) {
+        return new MojoExecutionException("Unsupported impsort version, set inProcess to false", e);
+    }
+
+    private static ParserConfiguration.LanguageLevel getLanguageLevel(final String compliance) {
+        if (compliance == null || compliance.trim().isEmpty()) {
+            return ParserConfiguration.LanguageLevel.POPULAR;
+        }
+        final String trimmed = compliance.trim();
+        if (trimmed.matches(OLD_COMPLIANCE)) {
+            return ParserConfiguration.LanguageLevel.valueOf(LANGUAGE_LEVEL_PREFIX + trimmed.replace(".", "_"));
+        } else if (trimmed.matches(LEGACY_COMPLIANCE)) {
+            return ParserConfiguration.LanguageLevel.valueOf(LANGUAGE_LEVEL_PREFIX + trimmed.replaceFirst("^.*[.]", ""));
+        }
+        return ParserConfiguration.LanguageLevel.valueOf(LANGUAGE_LEVEL_PREFIX + trimmed);
+    }
 }
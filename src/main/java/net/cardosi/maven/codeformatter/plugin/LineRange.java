@@ -0,0 +1,47 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.util.Objects;
+
+/**
+ * A range of lines of a file, 1-based and inclusive on both ends
+ */
+public class LineRange {
+
+    private final int start;
+    private final int end;
+
+    public LineRange(final int start, final int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LineRange lineRange = (LineRange) o;
+        return start == lineRange.start && end == lineRange.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + end;
+    }
+}
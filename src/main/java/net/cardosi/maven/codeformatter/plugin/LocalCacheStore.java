@@ -0,0 +1,53 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <code>CacheStore</code> keeping each key as an empty file of a directory, e.g. a volume shared by CI agents.
+ * <p>
+ * Keys are spread over sub-directories named after their first two characters; creating an empty file is atomic, so
+ * the directory can be written by concurrent builds.
+ */
+public class LocalCacheStore implements CacheStore {
+
+    private final Path directory;
+
+    public LocalCacheStore(final File directory) {
+        this.directory = directory.toPath();
+    }
+
+    @Override
+    public Set<String> getStoredKeys(final Collection<String> keys) {
+        final Set<String> toReturn = new HashSet<>();
+        for (String key : keys) {
+            if (Files.exists(getPath(key))) {
+                toReturn.add(key);
+            }
+        }
+        return toReturn;
+    }
+
+    @Override
+    public void store(final Collection<String> keys) throws IOException {
+        for (String key : keys) {
+            final Path path = getPath(key);
+            Files.createDirectories(path.getParent());
+            try {
+                Files.createFile(path);
+            } catch (FileAlreadyExistsException e) {
+                // stored meanwhile by another build
+            }
+        }
+    }
+
+    private Path getPath(final String key) {
+        return directory.resolve(key.substring(0, 2)).resolve(key.substring(2));
+    }
+}
@@ -0,0 +1,107 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.twdata.maven.mojoexecutor.MojoExecutor;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static net.cardosi.maven.codeformatter.plugin.ConfigurationHelper.*;
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.formatFiles;
+import static net.cardosi.maven.codeformatter.plugin.ImpsortHelper.fixImports;
+
+/**
+ * <code>FormatEngine</code> executing the <code>formatter-maven-plugin</code> and the
+ * <code>impsort-maven-plugin</code> one after the other, so that any version of them can be used.
+ * <p>
+ * Delegate plugins get the modified files as paths relative to their owning directories, and only those directories
+ * to scan.
+ */
+public class MojoFormatEngine implements FormatEngine {
+
+    private final ConfigurationSnapshot configurationSnapshot;
+    private final Map<String, MojoExecutor.Element> overrides;
+    private final MavenProject mavenProject;
+    private final MavenSession mavenSession;
+    private final BuildPluginManager pluginManager;
+    private final String formatterPluginVersion;
+    private final String impsortPluginVersion;
+    private final BuildReport report;
+    private final Log log;
+
+    /**
+     * @param overrides the configuration elements replacing the configured ones, by parameter name
+     */
+    public MojoFormatEngine(final ConfigurationSnapshot configurationSnapshot,
+                            final Map<String, MojoExecutor.Element> overrides,
+                            final MavenProject mavenProject,
+                            final MavenSession mavenSession,
+                            final BuildPluginManager pluginManager,
+                            final String formatterPluginVersion,
+                            final String impsortPluginVersion,
+                            final BuildReport report,
+                            final Log log) {
+        this.configurationSnapshot = configurationSnapshot;
+        this.overrides = overrides;
+        this.mavenProject = mavenProject;
+        this.mavenSession = mavenSession;
+        this.pluginManager = pluginManager;
+        this.formatterPluginVersion = formatterPluginVersion;
+        this.impsortPluginVersion = impsortPluginVersion;
+        this.report = report;
+        this.log = log;
+    }
+
+    @Override
+    public void format(final List<File> files,
+                       final Set<File> rangeFormattedFiles,
+                       final Set<File> importsUnaffectedFiles,
+                       final ChangeSet changeSet) throws MojoExecutionException {
+        final Map<String, MojoExecutor.Element> batchOverrides = new HashMap<>(overrides);
+        batchOverrides.put(DIRECTORIES, getDirectoriesElement(changeSet.retain(files).getDirectories(), log));
+        final List<File> formatterFiles = files.stream().filter(file -> !rangeFormattedFiles.contains(file)).collect(Collectors.toList());
+        if (formatterFiles.isEmpty() && !files.isEmpty()) {
+            log.info("All files already formatted by line ranges");
+        } else {
+            final MojoExecutor.Element[] formatterConfigurationElements = getFormatterConfigurationElements(getIncludesElement(changeSet.getIncludeFiles(formatterFiles), log),
+                    batchOverrides,
+                    configurationSnapshot,
+                    log);
+            try (BuildReport.Timer timer = report.time(BuildReport.FORMATTER_PLUGIN)) {
+                timer.getPhase().addFilesExamined(formatterFiles.size());
+                formatFiles(mavenProject,
+                        mavenSession,
+                        pluginManager,
+                        formatterConfigurationElements,
+                        formatterPluginVersion,
+                        log);
+            }
+        }
+        final List<File> impsortFiles = files.stream().filter(file -> !importsUnaffectedFiles.contains(file)).collect(Collectors.toList());
+        if (impsortFiles.isEmpty() && !files.isEmpty()) {
+            log.info("No file with affected imports");
+            return;
+        }
+        final MojoExecutor.Element[] impsortConfigurationElements = getImpsortConfigurationElements(getIncludesElement(changeSet.getIncludeFiles(impsortFiles), log),
+                batchOverrides,
+                configurationSnapshot,
+                log);
+        try (BuildReport.Timer timer = report.time(BuildReport.IMPSORT_PLUGIN)) {
+            timer.getPhase().addFilesExamined(impsortFiles.size());
+            fixImports(mavenProject,
+                    mavenSession,
+                    pluginManager,
+                    impsortConfigurationElements,
+                    impsortPluginVersion,
+                    log);
+        }
+    }
+}
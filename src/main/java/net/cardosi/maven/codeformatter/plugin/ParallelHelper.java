@@ -0,0 +1,225 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class responsible of splitting the modified files in balanced batches and formatting them concurrently
+ */
+public class ParallelHelper {
+
+    private ParallelHelper() {
+    }
+
+    /**
+     * Marks the end of the batches handed to the workers of <code>streamBatches</code>
+     */
+    private static final List<File> END_OF_BATCHES = Collections.unmodifiableList(new ArrayList<>());
+
+    /**
+     * Formats a single batch of files
+     */
+    @FunctionalInterface
+    public interface BatchFormatter {
+
+        void format(final List<File> batch, final int batchIndex) throws Exception;
+    }
+
+    /**
+     * Split the given absolute <code>files</code> in at most <code>batchesCount</code> batches, balanced by file size.
+     * <p>
+     * Files are assigned, largest first, to the lightest batch; ties are broken by path, so the same input always
+     * produces the same batches.
+     */
+    public static List<List<File>> getBatches(final List<File> files,
+                                              final int batchesCount,
+                                              final Log log) {
+        log.info("Splitting " + files.size() + " files in " + batchesCount + " batches");
+        final Map<File, Long> sizes = new HashMap<>();
+        for (File file : files) {
+            sizes.put(file, file.length());
+        }
+        final List<File> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparing((File file) -> sizes.get(file)).reversed().thenComparing(File::getPath));
+        final int size = Math.max(1, Math.min(batchesCount, sorted.size()));
+        final List<List<File>> toReturn = new ArrayList<>(size);
+        final long[] weights = new long[size];
+        for (int i = 0; i < size; i++) {
+            toReturn.add(new ArrayList<>());
+        }
+        for (File file : sorted) {
+            int lightest = 0;
+            for (int i = 1; i < size; i++) {
+                if (weights[i] < weights[lightest]) {
+                    lightest = i;
+                }
+            }
+            toReturn.get(lightest).add(file);
+            weights[lightest] += sizes.get(file);
+        }
+        log.debug("Batches " + toReturn);
+        return toReturn;
+    }
+
+    /**
+     * Split the given absolute <code>files</code> in consecutive batches of at most <code>batchSize</code> files.
+     * Batches are views of <code>files</code>, so no file list is copied.
+     */
+    public static List<List<File>> getFixedSizeBatches(final List<File> files,
+                                                       final int batchSize) {
+        final List<List<File>> toReturn = new ArrayList<>((files.size() + batchSize - 1) / batchSize);
+        for (int i = 0; i < files.size(); i += batchSize) {
+            toReturn.add(files.subList(i, Math.min(i + batchSize, files.size())));
+        }
+        return toReturn;
+    }
+
+    /**
+     * Format all the given <code>batches</code> with <code>threads</code> workers, handing each batch to the first
+     * free one.
+     * <p>
+     * At most one batch per worker is waiting at any time: the caller blocks until a worker is free, so only
+     * <code>2 * threads</code> batches are in flight whatever the number of batches. The <code>batchFormatter</code>
+     * receives the index of the worker, that is never used by two batches at the same time. Failures are handled as
+     * by <code>formatBatches</code>.
+     */
+    public static void streamBatches(final List<List<File>> batches,
+                                     final int threads,
+                                     final BatchFormatter batchFormatter,
+                                     final MavenProject mavenProject,
+                                     final MavenSession mavenSession,
+                                     final Log log) throws MojoExecutionException {
+        log.info("Streaming " + batches.size() + " batches to " + threads + " threads");
+        final BlockingQueue<List<File>> queue = new ArrayBlockingQueue<>(threads);
+        final Map<File, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                final int workerIndex = i;
+                futures.add(executorService.submit(() -> {
+                    // the current project is thread-bound, and it is required by the plugin manager
+                    mavenSession.setCurrentProject(mavenProject);
+                    List<File> batch;
+                    while ((batch = queue.take()) != END_OF_BATCHES) {
+                        failures.putAll(formatBatch(batch, workerIndex, batchFormatter, log));
+                    }
+                    return null;
+                }));
+            }
+            for (List<File> batch : batches) {
+                put(queue, batch, futures);
+            }
+            for (int i = 0; i < threads; i++) {
+                put(queue, END_OF_BATCHES, futures);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            if (!failures.isEmpty()) {
+                failures.forEach((file, e) -> log.error("Failed to format " + file + ": " + e.getMessage()));
+                throw new MojoExecutionException("Failed to format " + failures.size() + " files: " + failures.keySet());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while formatting", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to format", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Wait until the batch is queued; gives up, letting the failure of the workers be reported, if they all died
+     */
+    private static void put(final BlockingQueue<List<File>> queue,
+                            final List<File> batch,
+                            final List<Future<?>> workers) throws InterruptedException {
+        while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+            if (workers.stream().allMatch(Future::isDone)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Format all the given <code>batches</code> concurrently, with at most <code>threads</code> workers.
+     * <p>
+     * When a batch fails, its files are formatted again one by one, to identify the ones responsible of the failure.
+     * All batches are always completed, and the failing files are then reported together, in batch order.
+     */
+    public static void formatBatches(final List<List<File>> batches,
+                                     final int threads,
+                                     final BatchFormatter batchFormatter,
+                                     final MavenProject mavenProject,
+                                     final MavenSession mavenSession,
+                                     final Log log) throws MojoExecutionException {
+        log.info("Formatting " + batches.size() + " batches with " + threads + " threads");
+        final ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Map<File, Exception>>> futures = new ArrayList<>(batches.size());
+            for (int i = 0; i < batches.size(); i++) {
+                final List<File> batch = batches.get(i);
+                final int batchIndex = i;
+                futures.add(executorService.submit(() -> {
+                    // the current project is thread-bound, and it is required by the plugin manager
+                    mavenSession.setCurrentProject(mavenProject);
+                    return formatBatch(batch, batchIndex, batchFormatter, log);
+                }));
+            }
+            final Map<File, Exception> failures = new LinkedHashMap<>();
+            for (Future<Map<File, Exception>> future : futures) {
+                failures.putAll(future.get());
+            }
+            if (!failures.isEmpty()) {
+                failures.forEach((file, e) -> log.error("Failed to format " + file + ": " + e.getMessage()));
+                throw new MojoExecutionException("Failed to format " + failures.size() + " files: " + failures.keySet());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while formatting", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Failed to format", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static Map<File, Exception> formatBatch(final List<File> batch,
+                                                    final int batchIndex,
+                                                    final BatchFormatter batchFormatter,
+                                                    final Log log) {
+        try {
+            batchFormatter.format(batch, batchIndex);
+            return Collections.emptyMap();
+        } catch (Exception e) {
+            log.warn("Batch " + batchIndex + " failed, formatting its files one by one");
+            final Map<File, Exception> toReturn = new LinkedHashMap<>();
+            for (File file : batch) {
+                try {
+                    batchFormatter.format(Collections.singletonList(file), batchIndex);
+                } catch (Exception fileException) {
+                    toReturn.put(file, fileException);
+                }
+            }
+            if (toReturn.isEmpty()) {
+                // the failure can not be ascribed to any single file
+                batch.forEach(file -> toReturn.put(file, e));
+            }
+            return toReturn;
+        }
+    }
+}
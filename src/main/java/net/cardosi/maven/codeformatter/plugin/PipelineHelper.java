@@ -0,0 +1,169 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.Formatter;
+import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import static net.cardosi.maven.codeformatter.plugin.BuildReport.*;
+import static net.cardosi.maven.codeformatter.plugin.FileHelper.writeIfChanged;
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.JAVA_EXTENSION;
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.formatCode;
+import static net.cardosi.maven.codeformatter.plugin.ImpsortHelper.sortImports;
+
+/**
+ * Class responsible of the in-process format pipeline.
+ * <p>
+ * Each file is loaded once, its imports are sorted and its code is formatted in memory, and the result is written
+ * once, only if its bytes changed, instead of having the <code>formatter-maven-plugin</code> and the
+ * <code>impsort-maven-plugin</code> scan, read and write every file in turn.
+ */
+public class PipelineHelper {
+
+    private PipelineHelper() {
+    }
+
+    /**
+     * Sort imports and format the given absolute files.
+     * <p>
+     * Imports are sorted first, so that the formatter has the last word on the layout of the whole file.
+     *
+     * @param rangeFormattedFiles    the files already formatted by line ranges, whose imports only have to be sorted
+     * @param importsUnaffectedFiles the files whose imports do not have to be sorted
+     * @param impSort                the import sorter, or <code>null</code> if imports should not be sorted
+     * @return the files actually written; unchanged files are never written
+     */
+    public static List<File> processFiles(final List<File> files,
+                                   final Set<File> rangeFormattedFiles,
+                                   final Set<File> importsUnaffectedFiles,
+                                   final Map<String, Formatter> formatters,
+                                   final ImpSort impSort,
+                                   final LineEnding lineEnding,
+                                   final Charset encoding,
+                                   final BuildReport report,
+                                   final Log log) throws MojoExecutionException {
+        log.info("Processing " + files.size() + " files in-process");
+        final List<File> toReturn = new ArrayList<>();
+        for (File file : files) {
+            final ImpSort fileImpSort = importsUnaffectedFiles.contains(file) ? null : impSort;
+            if (processFile(file, rangeFormattedFiles.contains(file), formatters, fileImpSort, lineEnding, encoding, null, report, log).orElse(false)) {
+                toReturn.add(file);
+            }
+        }
+        log.info("Written " + toReturn.size() + " files, skipped " + (files.size() - toReturn.size()) + " unchanged files");
+        return toReturn;
+    }
+
+    /**
+     * Sort imports and format the given absolute file, in memory, and write it if changed.
+     *
+     * @param watchdog the watchdog enforcing the time budget of sorting and formatting, or <code>null</code> if the
+     *                 file has no time budget
+     * @return whether the file has been written, or <code>Optional.empty()</code> if it has been left untouched
+     * because it ran out of time
+     */
+    public static Optional<Boolean> processFile(final File file,
+                                                final boolean rangeFormatted,
+                                                final Map<String, Formatter> formatters,
+                                                final ImpSort impSort,
+                                                final LineEnding lineEnding,
+                                                final Charset encoding,
+                                                final FileWatchdog watchdog,
+                                                final BuildReport report,
+                                                final Log log) throws MojoExecutionException {
+        try {
+            final byte[] originalBytes;
+            try (BuildReport.Timer timer = report.time(READ)) {
+                originalBytes = Files.readAllBytes(file.toPath());
+                timer.getPhase().addFilesExamined(1);
+                timer.getPhase().addBytesRead(originalBytes.length);
+            }
+            final Callable<String> task = () -> processCode(file,
+                    new String(originalBytes, encoding),
+                    rangeFormatted,
+                    formatters,
+                    impSort,
+                    lineEnding,
+                    report,
+                    log);
+            // an abandoned task never writes the file, as writing happens here
+            final Optional<String> code = watchdog != null ? watchdog.call(file, task) : Optional.of(call(task));
+            if (!code.isPresent()) {
+                return Optional.empty();
+            }
+            try (BuildReport.Timer timer = report.time(WRITE)) {
+                final byte[] updatedBytes = code.get().getBytes(encoding);
+                timer.getPhase().addFilesExamined(1);
+                if (writeIfChanged(file, originalBytes, updatedBytes)) {
+                    timer.getPhase().addFilesChanged(1);
+                    timer.getPhase().addBytesWritten(updatedBytes.length);
+                    return Optional.of(true);
+                }
+                return Optional.of(false);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to process " + file, e);
+        }
+    }
+
+    /**
+     * Sort imports and format, in memory, the given current <code>code</code> of <code>file</code>.
+     *
+     * @param rangeFormatted whether the file is already formatted by line ranges, so that its imports only have to
+     *                       be sorted
+     * @return the processed code, equal to the given one if the file is already formatted
+     */
+    public static String processCode(final File file,
+                                     final String code,
+                                     final boolean rangeFormatted,
+                                     final Map<String, Formatter> formatters,
+                                     final ImpSort impSort,
+                                     final LineEnding lineEnding,
+                                     final BuildReport report,
+                                     final Log log) throws MojoExecutionException {
+        String toReturn = code;
+        if (impSort != null && file.getName().endsWith(JAVA_EXTENSION)) {
+            try (BuildReport.Timer timer = report.time(IMPORT_SORTING)) {
+                timer.getPhase().addFilesExamined(1);
+                final Optional<String> sorted = sortImports(impSort, file, toReturn, log);
+                if (sorted.isPresent() && !sorted.get().equals(toReturn)) {
+                    timer.getPhase().addFilesChanged(1);
+                    toReturn = sorted.get();
+                }
+            }
+        }
+        if (!rangeFormatted) {
+            try (BuildReport.Timer timer = report.time(FORMATTING)) {
+                timer.getPhase().addFilesExamined(1);
+                final Optional<String> formatted = formatCode(formatters, file, toReturn, lineEnding, log);
+                if (formatted.isPresent()) {
+                    timer.getPhase().addFilesChanged(1);
+                    toReturn = formatted.get();
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    private static <T> T call(final Callable<T> task) throws MojoExecutionException {
+        try {
+            return task.call();
+        } catch (MojoExecutionException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.ConfigurationSource;
+import net.revelc.code.formatter.Formatter;
+import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.*;
+import static net.cardosi.maven.codeformatter.plugin.ImpsortHelper.getImpSort;
+import static net.cardosi.maven.codeformatter.plugin.StagedHelper.formatStagedFiles;
+
+/**
+ * Lightweight entry point for git pre-commit hooks: formats the staged files of a module, as the <b>"STAGED"</b>
+ * change detection does, without starting Maven nor building the project model.
+ * <p>
+ * Since the <code>pom.xml</code> is not read, the configuration is given as <code>--name=value</code> options, named
+ * and defaulted as the <code>format</code> goal parameters, e.g.
+ * <code>--basedir=module --configFile=eclipse-format.xml --removeUnused=true</code>. Multi-valued options
+ * (<code>directories</code>, <code>excludes</code>, <code>skipFormatting</code>) are comma separated.
+ * <p>
+ * Exits with status 1 if formatting fails, so that the commit is aborted.
+ */
+public class PreCommitLauncher implements ConfigurationSource {
+
+    private final Map<String, String> options;
+    private final File basedir;
+    private final Log log = new SystemStreamLog();
+
+    PreCommitLauncher(final Map<String, String> options) {
+        this.options = options;
+        this.basedir = new File(getOption("basedir", System.getProperty("user.dir"))).getAbsoluteFile();
+    }
+
+    public static void main(final String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                System.err.println("Invalid option " + arg + ", expected --name=value");
+                System.exit(1);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        try {
+            new PreCommitLauncher(options).execute();
+        } catch (Exception e) {
+            System.err.println("Failed to format staged files: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void execute() throws MojoExecutionException {
+        final BuildReport report = new BuildReport(basedir.getName());
+        final LineEnding lineEnding = LineEnding.valueOf(getOption("lineEnding", LineEnding.AUTO.name()));
+        final Map<String, Formatter> formatters = getFormatters(getResourceManager(),
+                basedir,
+                getConfigFiles(),
+                getBooleanOption("useEclipseDefaults", false),
+                options.get("javaExclusionPattern"),
+                lineEnding,
+                this,
+                log);
+        final ImpSort impSort = getBooleanOption("skipImpsort", false) ? null : getImpSort(getEncoding(),
+                getOption("groups", "*"),
+                getOption("staticGroups", "*"),
+                getBooleanOption("staticAfter", false),
+                getBooleanOption("joinStaticWithNonStatic", false),
+                getBooleanOption("breadthFirstComparator", true),
+                getBooleanOption("removeUnused", false),
+                getBooleanOption("treatSamePackageAsUnused", true),
+                lineEnding,
+                options.get("compliance"),
+                log);
+        final List<File> directories = new ArrayList<>();
+        for (String directory : getOption("directories", "src/main/java,src/test/java").split(",")) {
+            directories.add(new File(basedir, directory.trim()));
+        }
+        final String excludes = options.get("excludes");
+        formatStagedFiles(basedir,
+                directories,
+                excludes != null ? excludes.split(",") : null,
+                formatters,
+                impSort,
+                lineEnding,
+                getEncoding(),
+                report,
+                log);
+        log.info(report.getSummary());
+    }
+
+    @Override
+    public Log getLog() {
+        return log;
+    }
+
+    @Override
+    public String getCompilerSources() {
+        return getOption("compilerSource", "1.8");
+    }
+
+    @Override
+    public String getCompilerCompliance() {
+        return getOption("compilerCompliance", "1.8");
+    }
+
+    @Override
+    public String getCompilerCodegenTargetPlatform() {
+        return getOption("compilerTargetPlatform", "1.8");
+    }
+
+    @Override
+    public File getTargetDirectory() {
+        return new File(basedir, "target");
+    }
+
+    @Override
+    public Charset getEncoding() {
+        return Charset.forName(getOption("encoding", "UTF-8"));
+    }
+
+    private FileResourceManager getResourceManager() {
+        final FileResourceManager toReturn = new FileResourceManager();
+        toReturn.addSearchPath(FILE_RESOURCE, basedir.getAbsolutePath());
+        return toReturn;
+    }
+
+    private Map<String, String> getConfigFiles() {
+        final Map<String, String> toReturn = new HashMap<>();
+        toReturn.put(JAVA_EXTENSION, getOption("configFile", "formatter-maven-plugin/eclipse/java.xml"));
+        toReturn.put(JS_EXTENSION, getOption("configJsFile", "formatter-maven-plugin/eclipse/javascript.xml"));
+        toReturn.put(HTML_EXTENSION, getOption("configHtmlFile", "formatter-maven-plugin/jsoup/html.properties"));
+        toReturn.put(XML_EXTENSION, getOption("configXmlFile", "formatter-maven-plugin/eclipse/xml.properties"));
+        toReturn.put(JSON_EXTENSION, getOption("configJsonFile", "formatter-maven-plugin/jackson/json.properties"));
+        toReturn.put(CSS_EXTENSION, getOption("configCssFile", "formatter-maven-plugin/ph-css/css.properties"));
+        final String skipFormatting = options.get("skipFormatting");
+        if (skipFormatting != null) {
+            for (String extension : skipFormatting.split(",")) {
+                toReturn.remove("." + extension.trim());
+            }
+        }
+        return toReturn;
+    }
+
+    private String getOption(final String name,
+                             final String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private boolean getBooleanOption(final String name,
+                                     final boolean defaultValue) {
+        return Boolean.parseBoolean(getOption(name, String.valueOf(defaultValue)));
+    }
+}
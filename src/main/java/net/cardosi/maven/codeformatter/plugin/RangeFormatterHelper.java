@@ -0,0 +1,202 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.formatter.model.ConfigReadException;
+import net.revelc.code.formatter.model.ConfigReader;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.resource.ResourceManager;
+import org.codehaus.plexus.resource.loader.ResourceNotFoundException;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.ToolFactory;
+import org.eclipse.jdt.core.formatter.CodeFormatter;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+import org.eclipse.text.edits.TextEdit;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static net.cardosi.maven.codeformatter.plugin.FileHelper.writeIfChanged;
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.FILE_RESOURCE;
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.JAVA_EXTENSION;
+
+/**
+ * Class responsible of in-process formatting of the modified line ranges of java files
+ */
+public class RangeFormatterHelper {
+
+    private RangeFormatterHelper() {
+    }
+
+    /**
+     * Whether the given file can be formatted by line ranges
+     */
+    public static boolean isRangeFormattable(final FileChange fileChange) {
+        return fileChange.getFile().getName().endsWith(JAVA_EXTENSION) && !fileChange.getLineRanges().isEmpty();
+    }
+
+    /**
+     * Read the eclipse formatter options the same way the <code>formatter-maven-plugin</code> does
+     */
+    public static Map<String, String> getFormattingOptions(final ResourceManager resourceManager,
+                                                           final File basedir,
+                                                           final String configFile,
+                                                           final boolean useEclipseDefaults,
+                                                           final String compilerSource,
+                                                           final String compilerCompliance,
+                                                           final String compilerTargetPlatform,
+                                                           final Log log) throws MojoExecutionException {
+        log.info("Executing getFormattingOptions");
+        final Map<String, String> toReturn = new HashMap<>();
+        if (!useEclipseDefaults) {
+            resourceManager.addSearchPath(FILE_RESOURCE, basedir.getAbsolutePath());
+            try (InputStream configInput = resourceManager.getResourceAsInputStream(configFile)) {
+                toReturn.putAll(new ConfigReader().read(configInput));
+            } catch (ResourceNotFoundException e) {
+                throw new MojoExecutionException("Cannot find config file [" + configFile + "]");
+            } catch (IOException | SAXException | ConfigReadException e) {
+                throw new MojoExecutionException("Cannot read config file [" + configFile + "]", e);
+            }
+        }
+        toReturn.put(JavaCore.COMPILER_SOURCE, compilerSource);
+        toReturn.put(JavaCore.COMPILER_COMPLIANCE, compilerCompliance);
+        toReturn.put(JavaCore.COMPILER_CODEGEN_TARGET_PLATFORM, compilerTargetPlatform);
+        return toReturn;
+    }
+
+    /**
+     * Format only the modified line ranges, widened by <code>context</code> lines, of the given absolute files.
+     * Code matching the <code>javaExclusionPattern</code>, if any, is left untouched.
+     *
+     * @return the number of files actually written; unchanged files are never written
+     */
+    public static int formatLineRanges(final List<FileChange> fileChanges,
+                                       final Map<String, String> options,
+                                       final LineEnding lineEnding,
+                                       final Charset encoding,
+                                       final String javaExclusionPattern,
+                                       final int context,
+                                       final BuildReport report,
+                                       final Log log) throws MojoExecutionException {
+        log.info("Formatting line ranges of " + fileChanges.size() + " files");
+        final BuildReport.Phase phase = report.getPhase(BuildReport.LINE_RANGES);
+        final CodeFormatter codeFormatter = ToolFactory.createCodeFormatter(options, ToolFactory.M_FORMAT_EXISTING);
+        final Pattern exclusionPattern = javaExclusionPattern != null && !javaExclusionPattern.isEmpty() ? Pattern.compile(javaExclusionPattern, Pattern.MULTILINE) : null;
+        int toReturn = 0;
+        for (FileChange fileChange : fileChanges) {
+            final File file = fileChange.getFile();
+            log.debug("Formatting " + fileChange);
+            try {
+                final byte[] originalBytes = Files.readAllBytes(file.toPath());
+                phase.addFilesExamined(1);
+                phase.addBytesRead(originalBytes.length);
+                final String code = new String(originalBytes, encoding);
+                final Document document = new Document(code);
+                final IRegion[] regions = getRegions(document, fileChange.getLineRanges(), context, exclusionPattern);
+                if (regions.length == 0) {
+                    continue;
+                }
+                final TextEdit textEdit = codeFormatter.format(CodeFormatter.K_COMPILATION_UNIT | CodeFormatter.F_INCLUDE_COMMENTS,
+                        code,
+                        regions,
+                        0,
+                        getLineSeparator(code, lineEnding));
+                if (textEdit == null) {
+                    log.warn("Failed to format " + file + ": invalid source");
+                    continue;
+                }
+                textEdit.apply(document);
+                final byte[] updatedBytes = document.get().getBytes(encoding);
+                if (writeIfChanged(file, originalBytes, updatedBytes)) {
+                    phase.addFilesChanged(1);
+                    phase.addBytesWritten(updatedBytes.length);
+                    toReturn++;
+                }
+            } catch (IOException | BadLocationException e) {
+                throw new MojoExecutionException("Failed to format " + file, e);
+            }
+        }
+        log.info("Written " + toReturn + " files, skipped " + (fileChanges.size() - toReturn) + " unchanged files");
+        return toReturn;
+    }
+
+    static IRegion[] getRegions(final Document document,
+                                final List<LineRange> lineRanges,
+                                final int context,
+                                final Pattern exclusionPattern) throws BadLocationException {
+        final int lines = document.getNumberOfLines();
+        final List<LineRange> sorted = new ArrayList<>(lineRanges);
+        sorted.sort(Comparator.comparingInt(LineRange::getStart));
+        final List<int[]> spans = new ArrayList<>();
+        for (LineRange lineRange : sorted) {
+            final int startLine = Math.max(1, lineRange.getStart() - context);
+            final int endLine = Math.min(lines, lineRange.getEnd() + context);
+            if (startLine > endLine) {
+                continue;
+            }
+            final int start = document.getLineOffset(startLine - 1);
+            final IRegion endLineInformation = document.getLineInformation(endLine - 1);
+            final int end = endLineInformation.getOffset() + endLineInformation.getLength();
+            if (!spans.isEmpty() && spans.get(spans.size() - 1)[1] >= start) {
+                spans.get(spans.size() - 1)[1] = Math.max(end, spans.get(spans.size() - 1)[1]);
+            } else {
+                spans.add(new int[]{start, end});
+            }
+        }
+        if (exclusionPattern != null) {
+            final Matcher matcher = exclusionPattern.matcher(document.get());
+            while (matcher.find()) {
+                subtract(spans, matcher.start(), matcher.end());
+            }
+        }
+        final List<IRegion> toReturn = new ArrayList<>(spans.size());
+        for (int[] span : spans) {
+            if (span[1] > span[0]) {
+                toReturn.add(new Region(span[0], span[1] - span[0]));
+            }
+        }
+        return toReturn.toArray(new IRegion[0]);
+    }
+
+    private static void subtract(final List<int[]> spans,
+                                 final int excludedStart,
+                                 final int excludedEnd) {
+        final ListIterator<int[]> iterator = spans.listIterator();
+        while (iterator.hasNext()) {
+            final int[] span = iterator.next();
+            if (span[1] <= excludedStart || span[0] >= excludedEnd) {
+                continue;
+            }
+            iterator.remove();
+            if (span[0] < excludedStart) {
+                iterator.add(new int[]{span[0], excludedStart});
+            }
+            if (span[1] > excludedEnd) {
+                iterator.add(new int[]{excludedEnd, span[1]});
+            }
+        }
+    }
+
+    private static String getLineSeparator(final String code,
+                                           final LineEnding lineEnding) {
+        switch (lineEnding) {
+            case KEEP:
+                final LineEnding determined = LineEnding.determineLineEnding(code);
+                return determined == LineEnding.UNKNOWN ? System.lineSeparator() : determined.getChars();
+            case AUTO:
+                return System.lineSeparator();
+            default:
+                return lineEnding.getChars();
+        }
+    }
+}
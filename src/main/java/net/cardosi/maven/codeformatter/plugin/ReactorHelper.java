@@ -0,0 +1,118 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.SessionData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Class responsible of splitting the reactor-wide change set by owning module
+ */
+public class ReactorHelper {
+
+    private ReactorHelper() {
+    }
+
+    private static final String AGGREGATE_EXECUTION_KEY = ReactorHelper.class.getName() + ".aggregateExecution";
+
+    /**
+     * Returns <code>true</code> only for the first invocation of the given goal in the given session, so that the
+     * reactor is processed by a single module even when modules are built concurrently. The following invocations
+     * wait for the first one to complete, so that, under <code>mvn -T</code>, no module goes on with its build before
+     * its files are processed.
+     *
+     * @param execution the future the caller completes once the reactor is processed, if the claim succeeds
+     */
+    public static boolean claimAggregateExecution(final MavenSession mavenSession,
+                                                  final String goal,
+                                                  final CompletableFuture<Void> execution,
+                                                  final Log log) throws MojoExecutionException {
+        final SessionData sessionData = mavenSession.getRepositorySession().getData();
+        final String key = AGGREGATE_EXECUTION_KEY + "." + goal;
+        if (sessionData.set(key, null, execution)) {
+            return true;
+        }
+        log.info("Waiting for the aggregate execution to process the reactor");
+        try {
+            ((CompletableFuture<?>) sessionData.get(key)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for the aggregate execution", e);
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Aggregate execution failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        return false;
+    }
+
+    /**
+     * Assign each of the given absolute <code>changedFiles</code> to the reactor module owning it, i.e. the one with
+     * the deepest base directory containing the file. Files not owned by any module are dropped.
+     *
+     * @return the modified files of each module, in reactor order
+     */
+    public static Map<MavenProject, List<FileChange>> getModifiedFilesByModule(final List<MavenProject> projects,
+                                                                               final List<FileChange> changedFiles,
+                                                                               final Log log) {
+        log.info("Splitting " + changedFiles.size() + " changed files among " + projects.size() + " modules");
+        final Map<Path, MavenProject> projectsByBasedir = new HashMap<>();
+        for (MavenProject project : projects) {
+            projectsByBasedir.put(getCanonicalPath(project.getBasedir()), project);
+        }
+        final Map<MavenProject, List<FileChange>> changedFilesByModule = new HashMap<>();
+        for (FileChange changedFile : changedFiles) {
+            Path current = changedFile.getFile().toPath().getParent();
+            while (current != null && !projectsByBasedir.containsKey(current)) {
+                current = current.getParent();
+            }
+            if (current == null) {
+                log.debug("No module owns " + changedFile);
+                continue;
+            }
+            changedFilesByModule.computeIfAbsent(projectsByBasedir.get(current), project -> new ArrayList<>()).add(changedFile);
+        }
+        final Map<MavenProject, List<FileChange>> toReturn = new LinkedHashMap<>();
+        for (MavenProject project : projects) {
+            if (changedFilesByModule.containsKey(project)) {
+                toReturn.put(project, changedFilesByModule.get(project));
+            }
+        }
+        log.debug("Modified files by module " + toReturn);
+        return toReturn;
+    }
+
+    /**
+     * Returns <code>true</code> if <code>directory</code> is <code>basedir</code> or one of its descendants
+     */
+    public static boolean isWithin(final File basedir,
+                                   final File directory) {
+        return getCanonicalPath(directory).startsWith(getCanonicalPath(basedir));
+    }
+
+    /**
+     * Retrieve the source directories of the given modules, as the delegate plugins would use them by default.
+     */
+    public static List<File> getSourceDirectories(final Collection<MavenProject> projects) {
+        final List<File> toReturn = new ArrayList<>();
+        for (MavenProject project : projects) {
+            toReturn.add(new File(project.getBuild().getSourceDirectory()));
+            toReturn.add(new File(project.getBuild().getTestSourceDirectory()));
+        }
+        return toReturn;
+    }
+
+    private static Path getCanonicalPath(final File file) {
+        try {
+            return file.getCanonicalFile().toPath();
+        } catch (IOException e) {
+            return file.getAbsoluteFile().toPath();
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.resource.ResourceManager;
+import org.codehaus.plexus.resource.loader.ResourceNotFoundException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.*;
+
+import static net.cardosi.maven.codeformatter.plugin.FormatterHelper.FILE_RESOURCE;
+import static net.cardosi.maven.codeformatter.plugin.HashHelper.*;
+
+/**
+ * Persistent, content-addressed cache of the files already formatted.
+ * <p>
+ * Each entry is the hash of the configuration fingerprint followed by the file content, so a file is found only if
+ * exactly the same content has already been formatted and impsorted with exactly the same settings. Entries are
+ * stored as fixed-size hashes, in least recently used order, and the oldest ones are evicted once
+ * <code>maxEntries</code> is reached.
+ * <p>
+ * An optional <code>CacheStore</code>, shared with other machines, is looked up for the files missing from the local
+ * entries, and receives the newly formatted ones unless it is read-only. When the store fails, it is ignored for the
+ * rest of the execution and the files are formatted locally.
+ */
+public class ResultCache {
+
+    private static final int MAGIC = 0x43464d52;
+    private static final int VERSION = 1;
+
+    private final File indexFile;
+    private final byte[] fingerprint;
+    private final int maxEntries;
+    private final Map<ByteBuffer, Boolean> entries;
+    private final boolean cacheStoreReadOnly;
+    private final Set<String> unstoredKeys = new LinkedHashSet<>();
+    private CacheStore cacheStore;
+    private boolean modified;
+
+    private ResultCache(final File indexFile,
+                        final byte[] fingerprint,
+                        final int maxEntries,
+                        final CacheStore cacheStore,
+                        final boolean cacheStoreReadOnly) {
+        this.indexFile = indexFile;
+        this.fingerprint = fingerprint;
+        this.maxEntries = maxEntries;
+        this.cacheStore = cacheStore;
+        this.cacheStoreReadOnly = cacheStoreReadOnly;
+        this.entries = new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, Boolean> eldest) {
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Load the cache stored in <code>indexFile</code>. A missing, unreadable or corrupted index results in an empty
+     * cache.
+     *
+     * @param cacheStore the shared store, or <code>null</code> if only local entries should be used
+     */
+    public static ResultCache load(final File indexFile,
+                                   final byte[] fingerprint,
+                                   final int maxEntries,
+                                   final CacheStore cacheStore,
+                                   final boolean cacheStoreReadOnly,
+                                   final Log log) {
+        log.info("Reading result cache " + indexFile);
+        final ResultCache toReturn = new ResultCache(indexFile, fingerprint, maxEntries, cacheStore, cacheStoreReadOnly);
+        if (!indexFile.isFile()) {
+            return toReturn;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                log.warn("Ignoring result cache " + indexFile + ": unknown format");
+                return toReturn;
+            }
+            final int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                final byte[] hash = new byte[HASH_LENGTH];
+                input.readFully(hash);
+                toReturn.entries.put(ByteBuffer.wrap(hash), Boolean.TRUE);
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring result cache " + indexFile + ": " + e.getMessage());
+            toReturn.entries.clear();
+        }
+        log.debug("Result cache entries " + toReturn.entries.size());
+        return toReturn;
+    }
+
+    /**
+     * Compute the fingerprint of the given effective configuration, including the content of the given configuration
+     * resources, resolved the same way the <code>formatter-maven-plugin</code> does.
+     */
+    public static byte[] getFingerprint(final SortedMap<String, String> configuration,
+                                        final List<String> configResources,
+                                        final ResourceManager resourceManager,
+                                        final File basedir,
+                                        final Log log) throws MojoExecutionException {
+        log.info("Executing getFingerprint");
+        final MessageDigest digest = getDigest();
+        configuration.forEach((key, value) -> {
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '=');
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        });
+        resourceManager.addSearchPath(FILE_RESOURCE, basedir.getAbsolutePath());
+        for (String configResource : configResources) {
+            if (configResource == null || configResource.isEmpty()) {
+                continue;
+            }
+            try (InputStream input = resourceManager.getResourceAsInputStream(configResource)) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } catch (ResourceNotFoundException e) {
+                log.debug("Config resource " + configResource + " not found");
+            } catch (IOException e) {
+                throw new MojoExecutionException("Cannot read config resource [" + configResource + "]", e);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Retrieve, among the given absolute files, the ones whose current content has already been formatted with the
+     * same settings, locally or by any build sharing the cache store
+     */
+    public Set<File> getFormattedFiles(final List<File> files,
+                                       final Log log) throws IOException {
+        final Set<File> toReturn = new HashSet<>();
+        final Map<String, File> missingFiles = new LinkedHashMap<>();
+        for (File file : files) {
+            final ByteBuffer key = getKey(file);
+            if (entries.containsKey(key)) {
+                toReturn.add(file);
+            } else {
+                missingFiles.put(toHex(key.array()), file);
+            }
+        }
+        if (cacheStore != null && !missingFiles.isEmpty()) {
+            try {
+                for (String storedKey : cacheStore.getStoredKeys(missingFiles.keySet())) {
+                    log.debug("Found " + missingFiles.get(storedKey) + " in cache store");
+                    toReturn.add(missingFiles.get(storedKey));
+                    entries.put(ByteBuffer.wrap(fromHex(storedKey)), Boolean.TRUE);
+                    modified = true;
+                }
+            } catch (IOException e) {
+                disableCacheStore(e, log);
+            }
+        }
+        return toReturn;
+    }
+
+    /**
+     * Record the current content of the given absolute file as formatted with the current settings
+     */
+    public void setFormatted(final File file) throws IOException {
+        final ByteBuffer key = getKey(file);
+        entries.put(key, Boolean.TRUE);
+        unstoredKeys.add(toHex(key.array()));
+        modified = true;
+    }
+
+    /**
+     * Write the cache back to its index file, if anything changed, and send the newly formatted contents to the cache
+     * store
+     */
+    public void save(final Log log) throws MojoExecutionException {
+        if (cacheStore != null && !cacheStoreReadOnly && !unstoredKeys.isEmpty()) {
+            log.info("Storing " + unstoredKeys.size() + " entries in cache store");
+            try {
+                cacheStore.store(unstoredKeys);
+            } catch (IOException e) {
+                disableCacheStore(e, log);
+            }
+        }
+        unstoredKeys.clear();
+        if (!modified) {
+            return;
+        }
+        log.info("Writing result cache " + indexFile);
+        final File parent = indexFile.getAbsoluteFile().getParentFile();
+        try {
+            Files.createDirectories(parent.toPath());
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(entries.size());
+                for (ByteBuffer entry : entries.keySet()) {
+                    output.write(entry.array());
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write result cache " + indexFile, e);
+        }
+        modified = false;
+    }
+
+    private void disableCacheStore(final IOException e,
+                                   final Log log) {
+        // the shared store is an optimization only, so its failures must not fail the build
+        log.warn("Ignoring cache store: " + e.getMessage());
+        cacheStore = null;
+    }
+
+    private ByteBuffer getKey(final File file) throws IOException {
+        final MessageDigest digest = getDigest();
+        digest.update(fingerprint);
+        digest.update(Files.readAllBytes(file.toPath()));
+        return ByteBuffer.wrap(digest.digest());
+    }
+}
@@ -1,4 +1,3 @@
-
 package net.cardosi.maven.codeformatter.plugin;
 
 import org.apache.maven.execution.MavenSession;
@@ -9,10 +8,8 @@ import org.apache.maven.project.MavenProject;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Stream;
 
 import static org.twdata.maven.mojoexecutor.MojoExecutor.*;
 
@@ -29,56 +26,80 @@ public class SCMHelper {
     private static final String CONNECTIONTYPE_CONFIG = "connectionType";
     private static final String DEVELOPERCONNECTION = "developerConnection";
     private static final String DIFF_GOAL = "diff";
-    private static final String[] FILE_IDENTIFIERS = {"--- a/", "diff --git a/"};
-
-    private static final String[] TO_REMOVE = {
-            String.format("src%1$smain%1$sjava%1$s", File.separatorChar),
-            String.format("src%1$smain%1$sresources%1$s", File.separatorChar),
-            String.format("src%1$stest%1$sjava%1$s", File.separatorChar),
-            String.format("src%1$stest%1$sresources%1$s", File.separatorChar)};
+    private static final String OUTPUT_FILE_CONFIG = "outputFile";
+    private static final String DIFF_FILE = "codeformatter-scm.diff";
+    private static final String GIT_DIR = ".git";
 
+    /**
+     * Retrieve the absolute paths of the files reported by the <code>maven-scm-plugin</code> <code>diff</code> goal.
+     * Diff paths are resolved against the root of the git working tree containing the project.
+     */
+    public static List<FileChange> getChangedFiles(final MavenProject mavenProject,
+                                                   final MavenSession mavenSession,
+                                                   final BuildPluginManager pluginManager,
+                                                   final String scmPluginVersion,
+                                                   final BuildReport report,
+                                                   final Log log) throws MojoExecutionException {
+        final File diffFile;
+        final BuildReport.Timer scmDiffTimer = report.time(BuildReport.SCM_DIFF);
+        try {
+            diffFile = executeDiff(mavenProject, mavenSession, pluginManager, scmPluginVersion, log);
+        } finally {
+            scmDiffTimer.close();
+        }
+        File workTree = getWorkTree(mavenProject.getBasedir());
+        List<FileChange> toReturn = new ArrayList<>();
+        try (BuildReport.Timer timer = report.time(BuildReport.DIFF_PARSING)) {
+            getDiffChanges(diffFile, log).forEach(fileChange -> toReturn.add(fileChange.withFile(new File(workTree, fileChange.getFile().getPath()))));
+            timer.getPhase().addFilesExamined(toReturn.size());
+            timer.getPhase().addBytesRead(diffFile.length());
+        }
+        return toReturn;
+    }
 
-    public static List<File> getModifiedFiles(final MavenProject mavenProject,
-                                              final MavenSession mavenSession,
-                                              final BuildPluginManager pluginManager,
-                                              final String scmPluginVersion,
-                                              final Log log) throws MojoExecutionException {
+    private static File executeDiff(final MavenProject mavenProject,
+                                    final MavenSession mavenSession,
+                                    final BuildPluginManager pluginManager,
+                                    final String scmPluginVersion,
+                                    final Log log) throws MojoExecutionException {
         log.info("Invoking " + SCM_PLUGIN);
+        // written in the build directory instead of the default <basedir>/<artifactId>.diff, so that concurrent
+        // builds of modules sharing a basedir never clobber each other's diff
+        final File diffFile = new File(mavenProject.getBuild().getDirectory(), DIFF_FILE);
+        if (!diffFile.getParentFile().isDirectory() && !diffFile.getParentFile().mkdirs()) {
+            throw new MojoExecutionException("Failed to create " + diffFile.getParentFile());
+        }
         executeMojo(plugin(groupId(ORG_APACHE_MAVEN_PLUGINS), artifactId(SCM_PLUGIN), version(scmPluginVersion)),
-                goal(DIFF_GOAL), configuration(element(name(CONNECTIONTYPE_CONFIG), DEVELOPERCONNECTION)),
+                goal(DIFF_GOAL), configuration(element(name(CONNECTIONTYPE_CONFIG), DEVELOPERCONNECTION),
+                        element(name(OUTPUT_FILE_CONFIG), diffFile.getAbsolutePath())),
                 executionEnvironment(mavenProject, mavenSession, pluginManager));
-        String diffFileName = mavenProject.getArtifactId() + ".diff";
-        String fullDiffPath = mavenProject.getBasedir().getPath() + File.separator + diffFileName;
-        File diffFile = new File(fullDiffPath);
-        return new ArrayList<>(getModifiedFiles(diffFile, log));
+        return diffFile;
+    }
 
+    /**
+     * Parse the given unified diff file into the typed changes of each file, with paths relative to the diff root
+     */
+    static List<FileChange> getDiffChanges(final File diffFile,
+                                           final Log log) throws MojoExecutionException {
+        return DiffParser.parse(diffFile, log);
     }
 
-    private static Set<File> getModifiedFiles(final File diffFile,
-                                              final Log log) {
-        log.info("Reading file " + diffFile);
-        Set<File> toReturn = new HashSet<>();
-        try (Stream<String> stream = Files.lines(diffFile.toPath(), StandardCharsets.UTF_8)) {
-            stream.forEach(s -> parseLine(s, log).ifPresent(toReturn::add));
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static File getWorkTree(final File basedir) {
+        File current = getCanonicalFile(basedir);
+        while (current != null) {
+            if (new File(current, GIT_DIR).exists()) {
+                return current;
+            }
+            current = current.getParentFile();
         }
-        return toReturn;
+        return getCanonicalFile(basedir);
     }
 
-    private static Optional<File> parseLine(final String line,
-                                            final Log log) {
-        log.debug("Parsing line " + line);
-        for (String fileIndentifier : FILE_IDENTIFIERS) {
-            if (line.startsWith(fileIndentifier)) {
-                String toParse = line.replace(fileIndentifier, "");
-                String filePart = toParse.split(" ")[0];
-                for (String toRemove : TO_REMOVE) {
-                    filePart = filePart.replace(toRemove, "");
-                }
-                return Optional.of(new File(filePart));
-            }
+    private static File getCanonicalFile(final File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
         }
-        return Optional.empty();
     }
 }
@@ -0,0 +1,199 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.Formatter;
+import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.StatusCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.submodule.SubmoduleWalk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static net.cardosi.maven.codeformatter.plugin.PipelineHelper.processFiles;
+
+/**
+ * Class responsible of formatting the files staged in the git index, e.g. from a pre-commit hook.
+ * <p>
+ * Fully staged files are formatted in the working tree and staged again. Files with unstaged changes too are
+ * formatted from their staged content, and only the index is updated, so unstaged hunks are left alone.
+ */
+public class StagedHelper {
+
+    private StagedHelper() {
+    }
+
+    /**
+     * Format the staged files under <code>basedir</code> that are inside the given <code>directories</code> and not
+     * excluded, then update the index.
+     *
+     * @return the number of files whose staged content changed
+     */
+    public static int formatStagedFiles(final File basedir,
+                                        final List<File> directories,
+                                        final String[] excludes,
+                                        final Map<String, Formatter> formatters,
+                                        final ImpSort impSort,
+                                        final LineEnding lineEnding,
+                                        final Charset encoding,
+                                        final BuildReport report,
+                                        final Log log) throws MojoExecutionException {
+        log.info("Formatting staged files of " + basedir);
+        final FileRepositoryBuilder repositoryBuilder = new FileRepositoryBuilder().readEnvironment().findGitDir(basedir);
+        if (repositoryBuilder.getGitDir() == null) {
+            throw new MojoExecutionException("No git repository found for " + basedir);
+        }
+        try (Repository repository = repositoryBuilder.build(); Git git = new Git(repository)) {
+            final Path workTree = repository.getWorkTree().getCanonicalFile().toPath();
+            final String modulePath = workTree.relativize(basedir.getCanonicalFile().toPath()).toString().replace(File.separatorChar, '/');
+            final StatusCommand statusCommand = git.status().setIgnoreSubmodules(SubmoduleWalk.IgnoreSubmoduleMode.ALL);
+            if (!modulePath.isEmpty()) {
+                statusCommand.addPath(modulePath);
+            }
+            final Status status = statusCommand.call();
+            final Set<String> stagedPaths = new TreeSet<>(status.getAdded());
+            stagedPaths.addAll(status.getChanged());
+            final List<FileChange> stagedFiles = new ArrayList<>(stagedPaths.size());
+            for (String stagedPath : stagedPaths) {
+                stagedFiles.add(new FileChange(workTree.resolve(stagedPath).toFile()));
+            }
+            final ChangeSet changeSet;
+            try (BuildReport.Timer timer = report.time(BuildReport.RESOLUTION)) {
+                timer.getPhase().addFilesExamined(stagedFiles.size());
+                changeSet = ChangeSet.of(stagedFiles, directories, excludes, log);
+            }
+            final List<File> fullyStagedFiles = new ArrayList<>();
+            final List<String> partiallyStaged = new ArrayList<>();
+            for (File file : changeSet.getFiles()) {
+                final String path = getPath(workTree, file);
+                if (status.getModified().contains(path)) {
+                    partiallyStaged.add(path);
+                } else {
+                    fullyStagedFiles.add(file);
+                }
+            }
+            int toReturn = 0;
+            if (!fullyStagedFiles.isEmpty()) {
+                // unchanged files are never written, so only the written ones have to be staged again
+                final List<File> writtenFiles = processFiles(fullyStagedFiles, Collections.emptySet(), Collections.emptySet(), formatters, impSort, lineEnding, encoding, report, log);
+                if (!writtenFiles.isEmpty()) {
+                    final AddCommand addCommand = git.add();
+                    for (File file : writtenFiles) {
+                        addCommand.addFilepattern(getPath(workTree, file));
+                    }
+                    addCommand.call();
+                    toReturn += writtenFiles.size();
+                }
+            }
+            if (!partiallyStaged.isEmpty()) {
+                toReturn += formatIndexEntries(repository, partiallyStaged, formatters, impSort, lineEnding, encoding, report, log);
+            }
+            log.info("Staged again " + toReturn + " formatted files");
+            return toReturn;
+        } catch (IOException | GitAPIException e) {
+            throw new MojoExecutionException("Failed to format staged files of " + basedir, e);
+        }
+    }
+
+    /**
+     * Format the staged content of the given paths, through temporary copies named as the original files, and
+     * replace their index entries; the working tree is not touched
+     */
+    private static int formatIndexEntries(final Repository repository,
+                                          final List<String> paths,
+                                          final Map<String, Formatter> formatters,
+                                          final ImpSort impSort,
+                                          final LineEnding lineEnding,
+                                          final Charset encoding,
+                                          final BuildReport report,
+                                          final Log log) throws IOException, MojoExecutionException {
+        log.debug("Formatting index entries " + paths);
+        final Path tempDirectory = Files.createTempDirectory("codeformatter-staged");
+        Throwable failure = null;
+        final DirCache dirCache = repository.lockDirCache();
+        try (ObjectInserter objectInserter = repository.newObjectInserter()) {
+            int toReturn = 0;
+            for (String path : paths) {
+                final DirCacheEntry entry = dirCache.getEntry(path);
+                if (entry == null) {
+                    continue;
+                }
+                final byte[] staged = repository.open(entry.getObjectId()).getCachedBytes();
+                final Path copyDirectory = Files.createTempDirectory(tempDirectory, "entry");
+                final Path copy = copyDirectory.resolve(path.substring(path.lastIndexOf('/') + 1));
+                Files.write(copy, staged);
+                if (!processFiles(Collections.singletonList(copy.toFile()), Collections.emptySet(), Collections.emptySet(), formatters, impSort, lineEnding, encoding, report, log).isEmpty()) {
+                    final byte[] formatted = Files.readAllBytes(copy);
+                    final ObjectId blobId = objectInserter.insert(Constants.OBJ_BLOB, formatted);
+                    entry.setObjectId(blobId);
+                    entry.setLength(formatted.length);
+                    // the stat data still describes the working tree file, whose unstaged content differs from the new
+                    // blob: smudged, the entry is always compared by content
+                    entry.smudgeRacilyClean();
+                    toReturn++;
+                }
+            }
+            objectInserter.flush();
+            dirCache.write();
+            if (!dirCache.commit()) {
+                throw new MojoExecutionException("Failed to update the git index of " + repository.getWorkTree());
+            }
+            return toReturn;
+        } catch (IOException | MojoExecutionException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            dirCache.unlock();
+            deleteRecursively(tempDirectory, failure);
+        }
+    }
+
+    /**
+     * Delete the given temporary directory and its content. A failure to delete is added to the given
+     * <code>failure</code>, if any, so that it never masks it.
+     */
+    private static void deleteRecursively(final Path directory,
+                                          final Throwable failure) throws IOException {
+        try {
+            if (Files.exists(directory)) {
+                final List<Path> paths = new ArrayList<>();
+                try (Stream<Path> walk = Files.walk(directory)) {
+                    walk.forEach(paths::add);
+                }
+                // children first
+                Collections.reverse(paths);
+                for (Path path : paths) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            if (failure == null) {
+                throw e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : (IOException) e;
+            }
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static String getPath(final Path workTree,
+                                  final File file) {
+        return workTree.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+    }
+}
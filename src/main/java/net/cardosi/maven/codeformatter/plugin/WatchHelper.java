@@ -0,0 +1,126 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Class responsible of watching source directories for saved files
+ */
+public class WatchHelper {
+
+    private WatchHelper() {
+    }
+
+    @FunctionalInterface
+    public interface FilesListener {
+
+        void filesSaved(final List<File> files) throws Exception;
+    }
+
+    /**
+     * Watch the given <code>directories</code>, and their sub-directories, until the current thread is interrupted.
+     * <p>
+     * Events are coalesced: after a file is saved, events are collected until none arrives for
+     * <code>quietPeriodMillis</code>, then the saved files are notified together, once each. Directories created
+     * later are watched as well.
+     */
+    public static void watch(final List<File> directories,
+                             final long quietPeriodMillis,
+                             final FilesListener filesListener,
+                             final Log log) throws MojoExecutionException {
+        log.info("Watching " + directories);
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+            for (File directory : directories) {
+                if (directory.isDirectory()) {
+                    register(watchService, directory.toPath(), watchedDirectories, log);
+                }
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                final Set<Path> saved = new LinkedHashSet<>();
+                WatchKey watchKey = watchService.take();
+                while (watchKey != null) {
+                    collect(watchService, watchKey, watchedDirectories, saved, log);
+                    watchKey = watchService.poll(quietPeriodMillis, TimeUnit.MILLISECONDS);
+                }
+                final List<File> files = new ArrayList<>(saved.size());
+                for (Path path : saved) {
+                    if (Files.isRegularFile(path)) {
+                        files.add(path.toFile());
+                    }
+                }
+                if (!files.isEmpty()) {
+                    notify(filesListener, files, log);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Watch interrupted");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to watch " + directories, e);
+        }
+    }
+
+    private static void collect(final WatchService watchService,
+                                final WatchKey watchKey,
+                                final Map<WatchKey, Path> watchedDirectories,
+                                final Set<Path> saved,
+                                final Log log) throws IOException {
+        final Path directory = watchedDirectories.get(watchKey);
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            if (directory == null || watchEvent.kind() == OVERFLOW) {
+                continue;
+            }
+            final Path path = directory.resolve((Path) watchEvent.context());
+            if (watchEvent.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                register(watchService, path, watchedDirectories, log);
+            } else if (watchEvent.kind() != ENTRY_DELETE) {
+                saved.add(path);
+            }
+        }
+        if (!watchKey.reset()) {
+            watchedDirectories.remove(watchKey);
+        }
+    }
+
+    private static void notify(final FilesListener filesListener,
+                               final List<File> files,
+                               final Log log) {
+        log.debug("Saved files " + files);
+        try {
+            filesListener.filesSaved(files);
+        } catch (Exception e) {
+            // a file saved while being edited may not compile yet: keep watching
+            log.warn("Failed to format " + files + ": " + e.getMessage());
+        }
+    }
+
+    private static void register(final WatchService watchService,
+                                 final Path root,
+                                 final Map<WatchKey, Path> watchedDirectories,
+                                 final Log log) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path directory,
+                                                     final BasicFileAttributes attributes) throws IOException {
+                log.debug("Watching " + directory);
+                watchedDirectories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), directory);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
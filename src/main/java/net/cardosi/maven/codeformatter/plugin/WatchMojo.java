@@ -0,0 +1,92 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.Formatter;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static net.cardosi.maven.codeformatter.plugin.PipelineHelper.processFiles;
+import static net.cardosi.maven.codeformatter.plugin.ReactorHelper.getSourceDirectories;
+import static net.cardosi.maven.codeformatter.plugin.WatchHelper.watch;
+
+/**
+ * Keep the formatter and impsort engines loaded, and format files of the reactor modules as soon as they are saved.
+ * <p>
+ * The goal runs once per build, until the build is interrupted; it accepts the same configuration of the
+ * <code>format</code> goal.
+ */
+@Mojo(name = "watch", requiresProject = true, aggregator = true, threadSafe = true)
+public class WatchMojo extends FormatMojo {
+
+    // Watch
+
+    /**
+     * The milliseconds without file events after which a burst of saved files is formatted.
+     */
+    @Parameter(defaultValue = "200", property = "watchQuietPeriod")
+    private long watchQuietPeriod;
+
+    /**
+     * Execute.
+     *
+     * @throws MojoExecutionException the mojo execution exception
+     * @throws MojoFailureException   the mojo failure exception
+     * @see org.apache.maven.plugin.AbstractMojo#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        getLog().info("Begin watching....");
+        final List<File> fileDirectories = new ArrayList<>();
+        for (File directory : getSourceDirectories(getMavenSession().getProjects())) {
+            if (directory.isDirectory()) {
+                fileDirectories.add(directory);
+            }
+        }
+        // nothing would ever be notified: fail instead of waiting forever
+        if (fileDirectories.isEmpty()) {
+            throw new MojoExecutionException("No source directory to watch in the reactor");
+        }
+        final Map<String, Formatter> formatters = createFormatters();
+        final ImpSort impSort = createImpSort();
+        // modification times of the files as last formatted, to ignore the events of already formatted files
+        final Map<File, Long> formatted = new HashMap<>();
+        watch(fileDirectories,
+                watchQuietPeriod,
+                files -> {
+                    final List<FileChange> saved = new ArrayList<>();
+                    for (File file : files) {
+                        final Long lastModified = formatted.get(file);
+                        if (lastModified == null || lastModified != file.lastModified()) {
+                            saved.add(new FileChange(file));
+                        }
+                    }
+                    final List<File> toFormat = ChangeSet.of(saved, fileDirectories, getExcludes(), getLog()).getFiles();
+                    if (toFormat.isEmpty()) {
+                        return;
+                    }
+                    final BuildReport report = new BuildReport(getMavenProject().getArtifactId());
+                    processFiles(toFormat,
+                            Collections.emptySet(),
+                            Collections.emptySet(),
+                            formatters,
+                            impSort,
+                            getLineEnding(),
+                            getEncoding(),
+                            report,
+                            getLog());
+                    toFormat.forEach(file -> formatted.put(file, file.lastModified()));
+                    getLog().info(report.getSummary());
+                },
+                getLog());
+        getLog().info("....done!");
+    }
+}
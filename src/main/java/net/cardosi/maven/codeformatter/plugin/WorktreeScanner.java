@@ -0,0 +1,304 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.jgit.ignore.IgnoreNode;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Working tree scanner detecting the files created or modified since the last successful run, whether tracked by git
+ * or not, from their stat data only.
+ * <p>
+ * The source directories are walked concurrently, skipping the paths ignored by the <code>.gitignore</code> files and
+ * symbolic links; the size and modification time of each file are compared with the snapshot stored by the previous
+ * run, so file contents are never read. As git does, a file modified in the same millisecond the snapshot was taken is
+ * reported again by the following scan.
+ * <p>
+ * When the snapshot is missing, unreadable or corrupted, e.g. at the first run, git stands in for it: only the files
+ * untracked or differing from <code>HEAD</code> are reported, while the stat data of all the files are recorded for
+ * the following scans. Directories outside any git repository have no such baseline, so all their files are reported.
+ */
+public class WorktreeScanner {
+
+    private static final int MAGIC = 0x43465753;
+    private static final int VERSION = 1;
+    private static final String GIT_DIR = ".git";
+    private static final String GITIGNORE = ".gitignore";
+
+    private final File snapshotFile;
+    /**
+     * The stat data of the previous scan, by canonical path, or <code>null</code> if no snapshot is available
+     */
+    private final Map<String, long[]> previous;
+    private final long previousTimestamp;
+    private final Map<String, long[]> current = new ConcurrentHashMap<>();
+
+    private WorktreeScanner(final File snapshotFile,
+                            final Map<String, long[]> previous,
+                            final long previousTimestamp) {
+        this.snapshotFile = snapshotFile;
+        this.previous = previous;
+        this.previousTimestamp = previousTimestamp;
+    }
+
+    /**
+     * Load the snapshot stored in <code>snapshotFile</code>
+     */
+    public static WorktreeScanner load(final File snapshotFile,
+                                       final Log log) {
+        log.info("Reading working tree snapshot " + snapshotFile);
+        if (snapshotFile.isFile()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                if (input.readInt() == MAGIC && input.readInt() == VERSION) {
+                    final long timestamp = input.readLong();
+                    final int size = input.readInt();
+                    final Map<String, long[]> entries = new HashMap<>(size * 2);
+                    for (int i = 0; i < size; i++) {
+                        entries.put(input.readUTF(), new long[]{input.readLong(), input.readLong()});
+                    }
+                    return new WorktreeScanner(snapshotFile, entries, timestamp);
+                }
+                log.warn("Ignoring incompatible working tree snapshot " + snapshotFile);
+            } catch (IOException e) {
+                log.warn("Ignoring unreadable working tree snapshot " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+        return new WorktreeScanner(snapshotFile, null, 0);
+    }
+
+    /**
+     * Walk the given <code>directories</code> with <code>threads</code> concurrent workers, and retrieve the absolute
+     * paths of the files whose stat data differ from the snapshot, or, without snapshot, of the uncommitted files,
+     * sorted by path
+     */
+    public List<FileChange> scan(final List<File> directories,
+                                 final int threads,
+                                 final Log log) throws MojoExecutionException {
+        log.info("Scanning " + directories.size() + " directories");
+        final Queue<File> changedFiles = new ConcurrentLinkedQueue<>();
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            final List<ScanTask> tasks = new ArrayList<>();
+            for (File directory : directories) {
+                if (directory.isDirectory()) {
+                    final Path path = directory.getCanonicalFile().toPath();
+                    final Set<File> uncommittedFiles = previous == null ? GitHelper.getUncommittedFiles(directory, log).orElse(null) : null;
+                    tasks.add(new ScanTask(path, getIgnoreRules(path), uncommittedFiles, changedFiles));
+                }
+            }
+            for (ScanTask task : tasks) {
+                pool.execute(task);
+            }
+            for (ScanTask task : tasks) {
+                task.join();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new MojoExecutionException("Failed to scan " + directories, e);
+        } finally {
+            pool.shutdown();
+        }
+        final List<FileChange> toReturn = new ArrayList<>(changedFiles.size());
+        for (File file : changedFiles) {
+            toReturn.add(new FileChange(file, Collections.emptyList(), previous != null && previous.containsKey(file.getPath()) ? ChangeType.MODIFIED : ChangeType.ADDED));
+        }
+        toReturn.sort(Comparator.comparing(FileChange::getFile));
+        log.debug("Changed files " + toReturn);
+        return toReturn;
+    }
+
+    /**
+     * Store the stat data of the last scan, once the changed files have been processed. The stat data of the
+     * <code>processed</code> files, that may have been rewritten meanwhile, are read again, while the
+     * <code>failed</code> ones are left out, so that the following scan reports them again.
+     */
+    public void save(final Collection<File> processed,
+                     final Collection<File> failed,
+                     final Log log) {
+        log.debug("Storing working tree snapshot " + snapshotFile);
+        final long timestamp = System.currentTimeMillis();
+        for (File file : processed) {
+            final long[] stat = getStat(file.toPath());
+            if (stat != null && current.containsKey(file.getPath())) {
+                current.put(file.getPath(), stat);
+            }
+        }
+        for (File file : failed) {
+            current.remove(file.getPath());
+        }
+        try {
+            Files.createDirectories(snapshotFile.getAbsoluteFile().getParentFile().toPath());
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile)))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(timestamp);
+                output.writeInt(current.size());
+                for (Map.Entry<String, long[]> entry : current.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeLong(entry.getValue()[0]);
+                    output.writeLong(entry.getValue()[1]);
+                }
+            }
+        } catch (IOException e) {
+            // the following scan reports every file again, but this run succeeded anyway
+            log.warn("Failed to store working tree snapshot to " + snapshotFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the file at <code>path</code> changed since the previous scan; without snapshot, whether it belongs to
+     * the given <code>uncommittedFiles</code>, if any
+     */
+    private boolean isChanged(final Path path,
+                              final long[] stat,
+                              final Set<File> uncommittedFiles) {
+        if (previous == null) {
+            return uncommittedFiles == null || uncommittedFiles.contains(path.toFile());
+        }
+        final long[] previousStat = previous.get(path.toString());
+        return previousStat == null || previousStat[0] != stat[0] || previousStat[1] != stat[1] || stat[0] >= previousTimestamp;
+    }
+
+    /**
+     * Retrieve the ignore rules applying to <code>directory</code>, from its own <code>.gitignore</code> up to the
+     * root of the git working tree containing it
+     */
+    private static IgnoreRules getIgnoreRules(final Path directory) throws IOException {
+        final Deque<Path> ancestors = new ArrayDeque<>();
+        Path current = directory;
+        while (current != null) {
+            ancestors.push(current);
+            if (Files.exists(current.resolve(GIT_DIR))) {
+                break;
+            }
+            current = current.getParent();
+        }
+        if (current == null) {
+            // not inside a git working tree: only the rules of the scanned directory itself apply
+            ancestors.clear();
+            ancestors.push(directory);
+        }
+        IgnoreRules toReturn = null;
+        for (Path ancestor : ancestors) {
+            toReturn = IgnoreRules.of(ancestor, toReturn);
+        }
+        return toReturn;
+    }
+
+    private static long[] getStat(final Path path) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return attributes.isRegularFile() ? new long[]{attributes.lastModifiedTime().toMillis(), attributes.size()} : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Walks a directory, forking a task for each sub-directory
+     */
+    private class ScanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final IgnoreRules ignoreRules;
+        private final Set<File> uncommittedFiles;
+        private final Queue<File> changedFiles;
+
+        private ScanTask(final Path directory,
+                         final IgnoreRules ignoreRules,
+                         final Set<File> uncommittedFiles,
+                         final Queue<File> changedFiles) {
+            this.directory = directory;
+            this.ignoreRules = ignoreRules;
+            this.uncommittedFiles = uncommittedFiles;
+            this.changedFiles = changedFiles;
+        }
+
+        @Override
+        protected void compute() {
+            final List<ScanTask> subTasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    final BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        if (!GIT_DIR.equals(entry.getFileName().toString()) && !IgnoreRules.isIgnored(ignoreRules, entry, true)) {
+                            subTasks.add(new ScanTask(entry, IgnoreRules.of(entry, ignoreRules), uncommittedFiles, changedFiles));
+                        }
+                    } else if (attributes.isRegularFile() && !IgnoreRules.isIgnored(ignoreRules, entry, false)) {
+                        final long[] stat = {attributes.lastModifiedTime().toMillis(), attributes.size()};
+                        current.put(entry.toString(), stat);
+                        if (isChanged(entry, stat, uncommittedFiles)) {
+                            changedFiles.add(entry.toFile());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(subTasks);
+        }
+    }
+
+    /**
+     * The <code>.gitignore</code> rules of a directory, chained to the ones of its ancestors
+     */
+    private static class IgnoreRules {
+
+        private final Path directory;
+        private final IgnoreNode ignoreNode;
+        private final IgnoreRules parent;
+
+        private IgnoreRules(final Path directory,
+                            final IgnoreNode ignoreNode,
+                            final IgnoreRules parent) {
+            this.directory = directory;
+            this.ignoreNode = ignoreNode;
+            this.parent = parent;
+        }
+
+        /**
+         * Chain the rules of <code>directory</code>, if any, to the given <code>parent</code> ones
+         */
+        private static IgnoreRules of(final Path directory,
+                                      final IgnoreRules parent) throws IOException {
+            final Path gitignore = directory.resolve(GITIGNORE);
+            if (!Files.isRegularFile(gitignore)) {
+                return parent;
+            }
+            final IgnoreNode ignoreNode = new IgnoreNode();
+            try (InputStream input = Files.newInputStream(gitignore)) {
+                ignoreNode.parse(input);
+            }
+            return new IgnoreRules(directory, ignoreNode, parent);
+        }
+
+        private static boolean isIgnored(final IgnoreRules ignoreRules,
+                                         final Path path,
+                                         final boolean isDirectory) {
+            for (IgnoreRules current = ignoreRules; current != null; current = current.parent) {
+                final String relativePath = current.directory.relativize(path).toString().replace(File.separatorChar, '/');
+                switch (current.ignoreNode.isIgnored(relativePath, isDirectory)) {
+                    case IGNORED:
+                        return true;
+                    case NOT_IGNORED:
+                        return false;
+                    default:
+                        // no rule of this directory matches: the parent ones decide
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory HTTP cache store, answering <code>HEAD</code> and <code>PUT</code> as expected by
+ * <code>HttpCacheStore</code>, that can be made to fail or to answer late
+ */
+class CacheStoreServer implements AutoCloseable {
+
+    private static final String CONTEXT = "/cache/";
+
+    private final HttpServer server;
+    private final Set<String> storedKeys = ConcurrentHashMap.newKeySet();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private volatile int failureCode;
+    private volatile long delayMillis;
+
+    CacheStoreServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext(CONTEXT, this::handle);
+        server.start();
+    }
+
+    /**
+     * The url of the store, with the given user info if not <code>null</code>
+     */
+    URL getUrl(final String userInfo) throws IOException {
+        return new URL("http://" + (userInfo != null ? userInfo + "@" : "") + "localhost:" + server.getAddress().getPort() + CONTEXT);
+    }
+
+    Set<String> getStoredKeys() {
+        return storedKeys;
+    }
+
+    /**
+     * The requests received, as <code>&lt;method&gt; &lt;key&gt; &lt;authorization&gt;</code>
+     */
+    List<String> getRequests() {
+        return new ArrayList<>(requests);
+    }
+
+    /**
+     * Answer every following request with the given status code; <code>0</code> restores normal answers
+     */
+    void setFailureCode(final int failureCode) {
+        this.failureCode = failureCode;
+    }
+
+    /**
+     * Wait the given time before answering every following request
+     */
+    void setDelayMillis(final long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String key = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+        requests.add(exchange.getRequestMethod() + " " + key + " " + exchange.getRequestHeaders().getFirst("Authorization"));
+        try {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        exchange.getRequestBody().close();
+        final int responseCode;
+        if (failureCode != 0) {
+            responseCode = failureCode;
+        } else if ("PUT".equals(exchange.getRequestMethod())) {
+            storedKeys.add(key);
+            responseCode = 201;
+        } else if ("HEAD".equals(exchange.getRequestMethod())) {
+            responseCode = storedKeys.contains(key) ? 200 : 404;
+        } else {
+            responseCode = 405;
+        }
+        exchange.sendResponseHeaders(responseCode, -1);
+        exchange.close();
+    }
+}
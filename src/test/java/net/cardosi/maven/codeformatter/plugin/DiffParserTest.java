@@ -0,0 +1,280 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DiffParserTest {
+
+    private final Log log = new SystemStreamLog();
+    private Path diffFile;
+
+    @Before
+    public void setUp() throws IOException {
+        diffFile = Files.createTempFile("codeformatter", ".diff");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(diffFile);
+    }
+
+    @Test
+    public void plainDiff() throws IOException, MojoExecutionException {
+        assertEquals(Arrays.asList(change("src/A.java", ChangeType.MODIFIED, 10, 12),
+                        change("src/B.java", ChangeType.ADDED, 1, 2)),
+                parse("--- a/src/A.java\t2020-01-01 00:00:00.000000000 +0100",
+                        "+++ b/src/A.java\t2020-01-02 00:00:00.000000000 +0100",
+                        "@@ -10,2 +10,3 @@",
+                        " context",
+                        "-removed",
+                        "+added",
+                        "+added",
+                        "--- /dev/null",
+                        "+++ b/src/B.java",
+                        "@@ -0,0 +1,2 @@",
+                        "+added",
+                        "+added"));
+    }
+
+    @Test
+    public void gitDiff() throws IOException, MojoExecutionException {
+        assertEquals(Arrays.asList(change("src/A.java", ChangeType.MODIFIED, 3, 3, 20, 21),
+                        change("src/B.java", ChangeType.ADDED, 1, 1),
+                        change("src/C.java", ChangeType.DELETED, 1, 1)),
+                parse("diff --git a/src/A.java b/src/A.java",
+                        "index 83db48f..bf269f4 100644",
+                        "--- a/src/A.java",
+                        "+++ b/src/A.java",
+                        "@@ -3 +3 @@ class A {",
+                        "-old",
+                        "+new",
+                        "@@ -20,0 +20,2 @@ class A {",
+                        "+added",
+                        "+added",
+                        "diff --git a/src/B.java b/src/B.java",
+                        "new file mode 100644",
+                        "index 0000000..e69de29",
+                        "--- /dev/null",
+                        "+++ b/src/B.java",
+                        "@@ -0,0 +1 @@",
+                        "+added",
+                        "diff --git a/src/C.java b/src/C.java",
+                        "deleted file mode 100644",
+                        "index e69de29..0000000",
+                        "--- a/src/C.java",
+                        "+++ /dev/null",
+                        "@@ -1 +0,0 @@",
+                        "-removed"));
+    }
+
+    @Test
+    public void pathsWithSpaces() throws IOException, MojoExecutionException {
+        assertEquals(Collections.singletonList(change("src/my dir/A.java", ChangeType.MODE_ONLY)),
+                parse("diff --git a/src/my dir/A.java b/src/my dir/A.java",
+                        "old mode 100644",
+                        "new mode 100755"));
+    }
+
+    @Test
+    public void renamesAndCopies() throws IOException, MojoExecutionException {
+        assertEquals(Arrays.asList(change("src/B.java", ChangeType.MOVED),
+                        change("src/D.java", ChangeType.RENAMED, 5, 5),
+                        change("src/F.java", ChangeType.ADDED)),
+                parse("diff --git a/src/A.java b/src/B.java",
+                        "similarity index 100%",
+                        "rename from src/A.java",
+                        "rename to src/B.java",
+                        "diff --git a/src/C.java b/src/D.java",
+                        "similarity index 90%",
+                        "rename from src/C.java",
+                        "rename to src/D.java",
+                        "index 83db48f..bf269f4 100644",
+                        "--- a/src/C.java",
+                        "+++ b/src/D.java",
+                        "@@ -5 +5 @@",
+                        "-old",
+                        "+new",
+                        "diff --git a/src/E.java b/src/F.java",
+                        "similarity index 100%",
+                        "copy from src/E.java",
+                        "copy to src/F.java"));
+    }
+
+    @Test
+    public void modeChanges() throws IOException, MojoExecutionException {
+        assertEquals(Arrays.asList(change("bin/run.sh", ChangeType.MODE_ONLY),
+                        change("bin/build.sh", ChangeType.MODIFIED, 2, 2)),
+                parse("diff --git a/bin/run.sh b/bin/run.sh",
+                        "old mode 100644",
+                        "new mode 100755",
+                        "diff --git a/bin/build.sh b/bin/build.sh",
+                        "old mode 100644",
+                        "new mode 100755",
+                        "index 83db48f..bf269f4",
+                        "--- a/bin/build.sh",
+                        "+++ b/bin/build.sh",
+                        "@@ -2 +2 @@",
+                        "-old",
+                        "+new"));
+    }
+
+    @Test
+    public void binaryFiles() throws IOException, MojoExecutionException {
+        assertEquals(Arrays.asList(change("logo.png", ChangeType.BINARY),
+                        change("icon.png", ChangeType.BINARY),
+                        change("src/A.java", ChangeType.MODIFIED, 1, 1)),
+                parse("diff --git a/logo.png b/logo.png",
+                        "index 83db48f..bf269f4 100644",
+                        "Binary files a/logo.png and b/logo.png differ",
+                        "diff --git a/icon.png b/icon.png",
+                        "index 83db48f..bf269f4 100644",
+                        "GIT binary patch",
+                        "literal 5",
+                        "McmZQzWMXCj0000A0ssI2",
+                        "",
+                        "diff --git a/src/A.java b/src/A.java",
+                        "index 83db48f..bf269f4 100644",
+                        "--- a/src/A.java",
+                        "+++ b/src/A.java",
+                        "@@ -1 +1 @@",
+                        "-old",
+                        "+new"));
+    }
+
+    @Test
+    public void noNewlineAtEndOfFile() throws IOException, MojoExecutionException {
+        assertEquals(Arrays.asList(change("src/A.java", ChangeType.MODIFIED, 1, 1),
+                        change("src/B.java", ChangeType.MODIFIED, 4, 4)),
+                parse("diff --git a/src/A.java b/src/A.java",
+                        "--- a/src/A.java",
+                        "+++ b/src/A.java",
+                        "@@ -1 +1 @@",
+                        "-old",
+                        "\\ No newline at end of file",
+                        "+new",
+                        "\\ No newline at end of file",
+                        "diff --git a/src/B.java b/src/B.java",
+                        "--- a/src/B.java",
+                        "+++ b/src/B.java",
+                        "@@ -4 +4 @@",
+                        "-old",
+                        "+new"));
+    }
+
+    @Test
+    public void hunkBodiesAreSkippedByLineCounts() throws IOException, MojoExecutionException {
+        // an empty context line without its leading space, and content lines looking like headers
+        assertEquals(Arrays.asList(change("src/A.java", ChangeType.MODIFIED, 1, 5),
+                        change("src/B.java", ChangeType.MODIFIED, 7, 7)),
+                parse("diff --git a/src/A.java b/src/A.java",
+                        "--- a/src/A.java",
+                        "+++ b/src/A.java",
+                        "@@ -1,4 +1,5 @@",
+                        " context",
+                        "",
+                        "--- a/src/C.java",
+                        "+++ b/src/C.java",
+                        "+diff --git a/src/D.java b/src/D.java",
+                        " context",
+                        "diff --git a/src/B.java b/src/B.java",
+                        "--- a/src/B.java",
+                        "+++ b/src/B.java",
+                        "@@ -7 +7 @@",
+                        "-old",
+                        "+new"));
+    }
+
+    @Test
+    public void crlfLineEndings() throws IOException, MojoExecutionException {
+        final List<String> lines = Arrays.asList("diff --git a/src/A.java b/src/A.java",
+                "index 83db48f..bf269f4 100644",
+                "--- a/src/A.java",
+                "+++ b/src/A.java",
+                "@@ -1,2 +1,2 @@",
+                " context",
+                "-old",
+                "+new",
+                "diff --git a/src/My B.java b/src/My B.java",
+                "old mode 100644",
+                "new mode 100755");
+        write(String.join("\r\n", lines) + "\r\n");
+        assertEquals(Arrays.asList(change("src/A.java", ChangeType.MODIFIED, 1, 2),
+                        change("src/My B.java", ChangeType.MODE_ONLY)),
+                DiffParser.parse(diffFile.toFile(), log));
+    }
+
+    @Test
+    public void quotedPaths() throws IOException, MojoExecutionException {
+        assertEquals(Arrays.asList(change("src/A.java", ChangeType.MODIFIED, 1, 1),
+                        change("src/caf\u00e9.java", ChangeType.DELETED),
+                        change("src/B.java", ChangeType.MODIFIED, 2, 2),
+                        change("src/tab\there.java", ChangeType.MODIFIED, 3, 3),
+                        change("src/\"quoted\".java", ChangeType.MOVED),
+                        change("src/C.java", ChangeType.MODE_ONLY)),
+                parse("diff --git a/src/A.java b/src/A.java",
+                        "--- a/src/A.java",
+                        "+++ b/src/A.java",
+                        "@@ -1 +1 @@",
+                        "-old",
+                        "+new",
+                        "diff --git \"a/src/caf\\303\\251.java\" \"b/src/caf\\303\\251.java\"",
+                        "deleted file mode 100644",
+                        "index e69de29..0000000",
+                        "diff --git a/src/B.java b/src/B.java",
+                        "--- a/src/B.java",
+                        "+++ b/src/B.java",
+                        "@@ -2 +2 @@",
+                        "-old",
+                        "+new",
+                        "diff --git \"a/src/tab\\there.java\" \"b/src/tab\\there.java\"",
+                        "--- \"a/src/tab\\there.java\"",
+                        "+++ \"b/src/tab\\there.java\"",
+                        "@@ -3 +3 @@",
+                        "-old",
+                        "+new",
+                        "diff --git a/src/quoted.java \"b/src/\\\"quoted\\\".java\"",
+                        "similarity index 100%",
+                        "rename from src/quoted.java",
+                        "rename to \"src/\\\"quoted\\\".java\"",
+                        "diff --git \"a/src/\\\\unreadable",
+                        "Binary files differ",
+                        "diff --git a/src/C.java b/src/C.java",
+                        "old mode 100644",
+                        "new mode 100755"));
+    }
+
+    private List<FileChange> parse(final String... lines) throws IOException, MojoExecutionException {
+        write(String.join("\n", lines) + "\n");
+        return DiffParser.parse(diffFile.toFile(), log);
+    }
+
+    private void write(final String content) throws IOException {
+        Files.write(diffFile, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FileChange change(final String path,
+                                     final ChangeType changeType,
+                                     final int... lineRanges) {
+        final List<LineRange> ranges = new ArrayList<>();
+        for (int i = 0; i < lineRanges.length; i += 2) {
+            ranges.add(new LineRange(lineRanges[i], lineRanges[i + 1]));
+        }
+        return new FileChange(new File(path), ranges, changeType);
+    }
+}
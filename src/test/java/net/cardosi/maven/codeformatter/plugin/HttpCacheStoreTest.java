@@ -0,0 +1,149 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HttpCacheStoreTest {
+
+    private static final String STORED_KEY = "0a1b2c3d";
+    private static final String MISSING_KEY = "4e5f6a7b";
+
+    private CacheStoreServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new CacheStoreServer();
+        server.getStoredKeys().add(STORED_KEY);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void getStoredKeysReturnsHitsOnly() throws IOException {
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl(null), 2000);
+        assertEquals(Collections.singleton(STORED_KEY), cacheStore.getStoredKeys(Arrays.asList(STORED_KEY, MISSING_KEY)));
+        // keys are looked up concurrently
+        assertEquals(new HashSet<>(Arrays.asList("HEAD " + STORED_KEY + " null", "HEAD " + MISSING_KEY + " null")), new HashSet<>(server.getRequests()));
+    }
+
+    @Test
+    public void storePutsEachKey() throws IOException {
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl(null), 2000);
+        cacheStore.store(Collections.singletonList(MISSING_KEY));
+        assertEquals(new HashSet<>(Arrays.asList(STORED_KEY, MISSING_KEY)), server.getStoredKeys());
+        assertEquals(Collections.singletonList("PUT " + MISSING_KEY + " null"), server.getRequests());
+        assertEquals(Collections.singleton(MISSING_KEY), cacheStore.getStoredKeys(Collections.singletonList(MISSING_KEY)));
+    }
+
+    @Test
+    public void userInfoIsSentWithBasicAuthentication() throws IOException {
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl("user:secret"), 2000);
+        cacheStore.getStoredKeys(Collections.singletonList(STORED_KEY));
+        final String authorization = "Basic " + Base64.getEncoder().encodeToString("user:secret".getBytes(StandardCharsets.UTF_8));
+        assertEquals(Collections.singletonList("HEAD " + STORED_KEY + " " + authorization), server.getRequests());
+    }
+
+    @Test
+    public void unexpectedLookupResponseFails() throws IOException {
+        server.setFailureCode(500);
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl(null), 2000);
+        try {
+            cacheStore.getStoredKeys(Collections.singletonList(STORED_KEY));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("500"));
+        }
+    }
+
+    @Test
+    public void userInfoIsNotInErrorMessages() throws IOException {
+        server.setFailureCode(401);
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl("user:secret"), 2000);
+        try {
+            cacheStore.getStoredKeys(Collections.singletonList(STORED_KEY));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("401"));
+            assertFalse(e.getMessage(), e.getMessage().contains("secret"));
+            assertTrue(e.getMessage(), e.getMessage().contains(server.getUrl(null) + STORED_KEY));
+        }
+    }
+
+    @Test
+    public void firstFailureStopsTheRequests() throws IOException {
+        server.setFailureCode(500);
+        server.setDelayMillis(50);
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl(null), 2000);
+        try {
+            cacheStore.store(getKeys(100));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("500"));
+        }
+        assertTrue(server.getRequests().toString(), server.getRequests().size() < 100);
+    }
+
+    @Test
+    public void unexpectedStoreResponseFails() throws IOException {
+        server.setFailureCode(403);
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl(null), 2000);
+        try {
+            cacheStore.store(Collections.singletonList(MISSING_KEY));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("403"));
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void slowStoreCostsAboutOneTimeout() throws IOException {
+        server.setDelayMillis(2000);
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl(null), 200);
+        final long start = System.currentTimeMillis();
+        try {
+            cacheStore.getStoredKeys(getKeys(100));
+            fail("Expected SocketTimeoutException");
+        } catch (SocketTimeoutException e) {
+            // expected
+        }
+        // one lookup after the other, 100 timeouts would take 20 seconds
+        final long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Took " + elapsed + " ms", elapsed < 2000);
+    }
+
+    @Test(timeout = 10000)
+    public void slowAnswerTimesOut() throws IOException {
+        server.setDelayMillis(2000);
+        final HttpCacheStore cacheStore = new HttpCacheStore(server.getUrl(null), 200);
+        try {
+            cacheStore.getStoredKeys(Collections.singletonList(STORED_KEY));
+            fail("Expected SocketTimeoutException");
+        } catch (SocketTimeoutException e) {
+            // expected
+        }
+    }
+
+    private static List<String> getKeys(final int count) {
+        final List<String> toReturn = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            toReturn.add(String.format("%08x", i));
+        }
+        return toReturn;
+    }
+}
@@ -0,0 +1,119 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import net.revelc.code.formatter.LineEnding;
+import net.revelc.code.impsort.ImpSort;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ImpsortHelperTest {
+
+    private static final String UNSORTED = "package a;\n"
+            + "\n"
+            + "import java.util.List;\n"
+            + "// collections\n"
+            + "import java.util.ArrayList;\n"
+            + "import static java.util.Collections.emptyList;\n"
+            + "import java.io.File;\n"
+            + "\n"
+            + "class A {\n"
+            + "    List<File> files = new ArrayList<>(emptyList());\n"
+            + "}\n";
+
+    private static final String SORTED = "package a;\n"
+            + "\n"
+            + "import java.io.File;\n"
+            + "\n"
+            + "class A {\n"
+            + "}\n";
+
+    private final Log log = new SystemStreamLog();
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("codeformatter-impsort");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void givenCodeIsSortedInsteadOfTheFile() throws IOException, MojoExecutionException {
+        final File file = write("A.java", SORTED);
+        final Optional<String> sorted = ImpsortHelper.sortImports(getImpSort(false), file, UNSORTED, log);
+        assertTrue(sorted.isPresent());
+        assertEquals(getSavedSorted(UNSORTED, false), sorted.get());
+    }
+
+    @Test
+    public void missingFileIsNotRead() throws IOException, MojoExecutionException {
+        final File file = directory.resolve("Missing.java").toFile();
+        assertEquals(getSavedSorted(UNSORTED, false), ImpsortHelper.sortImports(getImpSort(false), file, UNSORTED, log).get());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void sortedCodeIsUnchanged() throws MojoExecutionException {
+        final File file = directory.resolve("A.java").toFile();
+        assertFalse(ImpsortHelper.sortImports(getImpSort(false), file, SORTED, log).isPresent());
+        assertFalse(ImpsortHelper.sortImports(getImpSort(false), file, "package a;\n\nclass A {\n}\n", log).isPresent());
+        assertFalse(ImpsortHelper.sortImports(getImpSort(false), file, "", log).isPresent());
+    }
+
+    @Test
+    public void unusedImportsAreRemovedAsTheFileWouldBe() throws IOException, MojoExecutionException {
+        final String code = "package a;\n"
+                + "import java.util.Map;\n"
+                + "import a.B;\n"
+                + "import java.util.List;\n"
+                + "class A {\n"
+                + "    List<String> strings;\n"
+                + "}\n";
+        final File file = directory.resolve("A.java").toFile();
+        assertEquals(getSavedSorted(code, true), ImpsortHelper.sortImports(getImpSort(true), file, code, log).get());
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void unparsableCodeFails() throws MojoExecutionException {
+        ImpsortHelper.sortImports(getImpSort(false), directory.resolve("A.java").toFile(), "import b.B;\nclass A {", log);
+    }
+
+    private ImpSort getImpSort(final boolean removeUnused) {
+        return ImpsortHelper.getImpSort(StandardCharsets.UTF_8, "*", "*", false, false, true, removeUnused, true, LineEnding.LF, null, log);
+    }
+
+    /**
+     * The content written by <code>ImpSort</code> itself, once the given code is saved to a file and sorted
+     */
+    private String getSavedSorted(final String code,
+                                  final boolean removeUnused) throws IOException {
+        final Path path = directory.resolve("Expected.java");
+        Files.write(path, code.getBytes(StandardCharsets.UTF_8));
+        getImpSort(removeUnused).parseFile(path).saveSorted(path);
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    }
+
+    private File write(final String name,
+                       final String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+}
@@ -0,0 +1,50 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class LocalCacheStoreTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("codeformatter-cache-store");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void storedKeysAreFound() throws IOException {
+        final LocalCacheStore cacheStore = new LocalCacheStore(directory.toFile());
+        assertTrue(cacheStore.getStoredKeys(Arrays.asList("0a1b2c3d", "4e5f6a7b")).isEmpty());
+        cacheStore.store(Collections.singletonList("0a1b2c3d"));
+        assertEquals(Collections.singleton("0a1b2c3d"), cacheStore.getStoredKeys(Arrays.asList("0a1b2c3d", "4e5f6a7b")));
+        assertTrue(Files.isRegularFile(directory.resolve("0a").resolve("1b2c3d")));
+    }
+
+    @Test
+    public void storingTwiceSucceeds() throws IOException {
+        final LocalCacheStore cacheStore = new LocalCacheStore(directory.toFile());
+        cacheStore.store(Collections.singletonList("0a1b2c3d"));
+        new LocalCacheStore(directory.toFile()).store(Arrays.asList("0a1b2c3d", "0a9f8e7d"));
+        assertEquals(2, cacheStore.getStoredKeys(Arrays.asList("0a1b2c3d", "0a9f8e7d")).size());
+    }
+}
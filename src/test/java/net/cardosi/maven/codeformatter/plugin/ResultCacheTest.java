@@ -0,0 +1,136 @@
+package net.cardosi.maven.codeformatter.plugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+
+    private static final byte[] FINGERPRINT = "fingerprint".getBytes(StandardCharsets.UTF_8);
+
+    private final Log log = new SystemStreamLog();
+    private Path directory;
+    private File indexFile;
+    private File file;
+    private CacheStoreServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("codeformatter-result-cache");
+        indexFile = directory.resolve("index.bin").toFile();
+        file = write("A.java", "class A {}");
+        server = new CacheStoreServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void formattedFilesAreFoundAfterReload() throws IOException, MojoExecutionException {
+        final ResultCache cache = ResultCache.load(indexFile, FINGERPRINT, 10, null, false, log);
+        assertTrue(cache.getFormattedFiles(Collections.singletonList(file), log).isEmpty());
+        cache.setFormatted(file);
+        cache.save(log);
+        final ResultCache reloaded = ResultCache.load(indexFile, FINGERPRINT, 10, null, false, log);
+        assertEquals(Collections.singleton(file), reloaded.getFormattedFiles(Collections.singletonList(file), log));
+    }
+
+    @Test
+    public void changedContentOrFingerprintIsNotFound() throws IOException, MojoExecutionException {
+        final ResultCache cache = ResultCache.load(indexFile, FINGERPRINT, 10, null, false, log);
+        cache.setFormatted(file);
+        cache.save(log);
+        final ResultCache otherFingerprint = ResultCache.load(indexFile, "other".getBytes(StandardCharsets.UTF_8), 10, null, false, log);
+        assertTrue(otherFingerprint.getFormattedFiles(Collections.singletonList(file), log).isEmpty());
+        write("A.java", "class A { }");
+        assertTrue(ResultCache.load(indexFile, FINGERPRINT, 10, null, false, log).getFormattedFiles(Collections.singletonList(file), log).isEmpty());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws IOException, MojoExecutionException {
+        final File other = write("B.java", "class B {}");
+        final ResultCache cache = ResultCache.load(indexFile, FINGERPRINT, 1, null, false, log);
+        cache.setFormatted(file);
+        cache.setFormatted(other);
+        cache.save(log);
+        final ResultCache reloaded = ResultCache.load(indexFile, FINGERPRINT, 1, null, false, log);
+        assertEquals(Collections.singleton(other), reloaded.getFormattedFiles(Arrays.asList(file, other), log));
+    }
+
+    @Test
+    public void cacheStoreIsSharedBetweenIndexes() throws IOException, MojoExecutionException {
+        final ResultCache cache = ResultCache.load(indexFile, FINGERPRINT, 10, new HttpCacheStore(server.getUrl(null), 2000), false, log);
+        cache.setFormatted(file);
+        cache.save(log);
+        assertEquals(1, server.getStoredKeys().size());
+        final File otherIndexFile = directory.resolve("other.bin").toFile();
+        final ResultCache other = ResultCache.load(otherIndexFile, FINGERPRINT, 10, new HttpCacheStore(server.getUrl(null), 2000), false, log);
+        assertEquals(Collections.singleton(file), other.getFormattedFiles(Collections.singletonList(file), log));
+        other.save(log);
+        // the store hit is now a local entry
+        final ResultCache reloaded = ResultCache.load(otherIndexFile, FINGERPRINT, 10, null, false, log);
+        assertEquals(Collections.singleton(file), reloaded.getFormattedFiles(Collections.singletonList(file), log));
+    }
+
+    @Test
+    public void readOnlyCacheStoreIsNotWritten() throws IOException, MojoExecutionException {
+        final ResultCache cache = ResultCache.load(indexFile, FINGERPRINT, 10, new HttpCacheStore(server.getUrl(null), 2000), true, log);
+        cache.setFormatted(file);
+        cache.save(log);
+        assertTrue(server.getStoredKeys().isEmpty());
+        assertTrue(server.getRequests().isEmpty());
+    }
+
+    @Test
+    public void failingCacheStoreIsDisabled() throws IOException, MojoExecutionException {
+        server.setFailureCode(500);
+        final ResultCache cache = ResultCache.load(indexFile, FINGERPRINT, 10, new HttpCacheStore(server.getUrl(null), 2000), false, log);
+        assertTrue(cache.getFormattedFiles(Collections.singletonList(file), log).isEmpty());
+        assertEquals(1, server.getRequests().size());
+        cache.setFormatted(file);
+        cache.save(log);
+        // no PUT once the lookup failed, but the local index is still written
+        assertEquals(1, server.getRequests().size());
+        assertEquals(Collections.singleton(file), ResultCache.load(indexFile, FINGERPRINT, 10, null, false, log).getFormattedFiles(Collections.singletonList(file), log));
+    }
+
+    @Test(timeout = 10000)
+    public void slowCacheStoreIsDisabled() throws IOException, MojoExecutionException {
+        server.setDelayMillis(2000);
+        final File other = write("B.java", "class B {}");
+        final ResultCache cache = ResultCache.load(indexFile, FINGERPRINT, 10, new HttpCacheStore(server.getUrl(null), 200), false, log);
+        // the lookups time out, and the store is not requested again
+        assertTrue(cache.getFormattedFiles(Arrays.asList(file, other), log).isEmpty());
+        final List<String> requests = server.getRequests();
+        assertTrue(cache.getFormattedFiles(Arrays.asList(file, other), log).isEmpty());
+        cache.setFormatted(file);
+        cache.save(log);
+        assertEquals(requests, server.getRequests());
+    }
+
+    private File write(final String name,
+                       final String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8)).toFile();
+    }
+}